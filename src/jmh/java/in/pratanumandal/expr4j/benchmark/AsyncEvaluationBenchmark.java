@@ -0,0 +1,90 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.EvaluationExecutors;
+import in.pratanumandal.expr4j.expression.Expression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares fetching every variable of an expression up front with fetching variables through a resolver as evaluation reaches them,
+ * against a fake store with a fixed latency per batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AsyncEvaluationBenchmark {
+
+    public static final String EXPRESSION = "if(x < y, a * b, c + d + e + f + g + h) + sqrt(x^2 + y^2)";
+
+    @Param({"200"})
+    public long latencyMicros;
+
+    private Expression<Double> expression;
+
+    private LatencyResolver resolver;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        expression = Builders.doubleBuilder().build(EXPRESSION);
+
+        Map<String, Double> values = new HashMap<>();
+        for (String label : expression.getVariables()) {
+            values.put(label, (double) label.charAt(0));
+        }
+
+        resolver = new LatencyResolver(values, latencyMicros);
+        executor = EvaluationExecutors.newVirtualThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        resolver.shutdown();
+    }
+
+    @Benchmark
+    public Double fetchAll() {
+        Map<String, Double> values = resolver.resolve(new LinkedHashSet<>(expression.getVariables())).join();
+        Bindings<Double> bindings = expression.bindings().setAll(values);
+        return expression.evaluate(bindings);
+    }
+
+    @Benchmark
+    public Double fetchReached() {
+        return expression.evaluateAsync(resolver, executor).join();
+    }
+
+}
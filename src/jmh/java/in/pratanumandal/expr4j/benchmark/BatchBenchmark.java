@@ -0,0 +1,85 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.expression.DoubleExpression;
+import in.pratanumandal.expr4j.expression.EvaluationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating an expression row by row with batch evaluation over columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchBenchmark {
+
+    @Param({"65536"})
+    public int rows;
+
+    protected DoubleExpression expression;
+
+    protected double[][] columns;
+
+    protected double[] results;
+
+    @Setup
+    public void setup() {
+        expression = new DoubleExpression(Builders.primitiveBuilder().build(Builders.PRIMITIVE_EXPRESSION));
+
+        Random random = new Random(42);
+        columns = new double[expression.getVariables().size()][rows];
+        for (double[] column : columns) {
+            for (int i = 0; i < rows; i++) {
+                column[i] = random.nextDouble() * 100;
+            }
+        }
+
+        results = new double[rows];
+    }
+
+    @Benchmark
+    public double[] evaluateRows() {
+        EvaluationContext context = EvaluationContext.current();
+        double[] slots = new double[columns.length];
+        for (int i = 0; i < rows; i++) {
+            for (int slot = 0; slot < slots.length; slot++) {
+                slots[slot] = columns[slot][i];
+            }
+            results[i] = expression.evaluateAsDouble(slots, context);
+        }
+        return results;
+    }
+
+    @Benchmark
+    public double[] evaluateBatch() {
+        expression.evaluateBatch(columns, results);
+        return results;
+    }
+
+}
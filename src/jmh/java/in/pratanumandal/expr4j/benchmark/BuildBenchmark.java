@@ -0,0 +1,83 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.cache.ConcurrentCache;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building an expression with and without the expression cache.<br>
+ * Run with <code>-t</code> to measure the cache under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BuildBenchmark {
+
+    /**
+     * Builder without a cache, one per thread.
+     */
+    @State(Scope.Thread)
+    public static class Uncached {
+
+        private ExpressionBuilder<Double> builder;
+
+        @Setup
+        public void setup() {
+            builder = Builders.doubleBuilder();
+        }
+
+    }
+
+    /**
+     * Builder with a warm cache, shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Cached {
+
+        private ExpressionBuilder<Double> builder;
+
+        @Setup
+        public void setup() {
+            builder = Builders.doubleBuilder();
+            builder.setExpressionCache(new ConcurrentCache<>(1024));
+            builder.build(Builders.EXPRESSION);
+        }
+
+    }
+
+    @Benchmark
+    public Expression<Double> build(Uncached state) {
+        return state.builder.build(Builders.EXPRESSION);
+    }
+
+    @Benchmark
+    public Expression<Double> buildCached(Cached state) {
+        return state.builder.build(Builders.EXPRESSION);
+    }
+
+}
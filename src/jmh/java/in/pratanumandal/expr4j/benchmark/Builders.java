@@ -0,0 +1,134 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+
+/**
+ * Factory for the expression builders shared by the benchmarks.
+ */
+public final class Builders {
+
+    /**
+     * Expression used by the benchmarks.
+     */
+    public static final String EXPRESSION = "if(x < y, sqrt(x^2 + y^2) / (1 + sqrt(x^2 + y^2)), max(x, y, 3) * 2 - x / y)";
+
+    /**
+     * Expression made only of primitive operations, used by the batch benchmarks.
+     */
+    public static final String PRIMITIVE_EXPRESSION = "sqrt(x^2 + y^2) / (1 + max(x, y, 3)) * 2 - x / y";
+
+    private Builders() {
+    }
+
+    /**
+     * Create a builder for expressions over doubles.
+     *
+     * @return The builder
+     */
+    public static ExpressionBuilder<Double> doubleBuilder() {
+        ExpressionBuilder<Double> builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+            @Override
+            protected Double stringToOperand(String operand) {
+                return Double.parseDouble(operand);
+            }
+
+            @Override
+            protected String operandToString(Double operand) {
+                return String.valueOf(operand);
+            }
+        });
+
+        ExpressionDictionary<Double> dictionary = builder.getExpressionDictionary();
+
+        dictionary.addOperator(new Operator<>("+", OperatorType.PREFIX, Integer.MAX_VALUE, true, (parameters) -> parameters.get(0).value()));
+        dictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, true, (parameters) -> -parameters.get(0).value()));
+
+        dictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, true, (parameters) -> parameters.get(0).value() + parameters.get(1).value()));
+        dictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, true, (parameters) -> parameters.get(0).value() - parameters.get(1).value()));
+        dictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, true, (parameters) -> parameters.get(0).value() * parameters.get(1).value()));
+        dictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, true, (parameters) -> parameters.get(0).value() / parameters.get(1).value()));
+        dictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, true, (parameters) -> Math.pow(parameters.get(0).value(), parameters.get(1).value())));
+        dictionary.addOperator(new Operator<>("<", OperatorType.INFIX, 1, true, (parameters) -> parameters.get(0).value() < parameters.get(1).value() ? 1.0 : 0.0));
+
+        dictionary.addFunction(new Function<>("sqrt", 1, true, (parameters) -> Math.sqrt(parameters.get(0).value())));
+        dictionary.addFunction(new Function<>("if", 3, true, (parameters) ->
+                parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+        dictionary.addFunction(new Function<>("max", true, (parameters) -> {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < parameters.size(); i++) {
+                max = Math.max(max, parameters.get(i).value());
+            }
+            return max;
+        }));
+
+        dictionary.addConstant("pi", Math.PI);
+
+        return builder;
+    }
+
+    /**
+     * Create a builder for expressions over doubles whose operations all have a primitive form.
+     *
+     * @return The builder
+     */
+    public static ExpressionBuilder<Double> primitiveBuilder() {
+        ExpressionBuilder<Double> builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+            @Override
+            protected Double stringToOperand(String operand) {
+                return Double.parseDouble(operand);
+            }
+
+            @Override
+            protected String operandToString(Double operand) {
+                return String.valueOf(operand);
+            }
+        });
+
+        ExpressionDictionary<Double> dictionary = builder.getExpressionDictionary();
+
+        dictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, true, (DoubleUnaryOperation) (operand) -> -operand));
+
+        dictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, true, (DoubleBinaryOperation) (left, right) -> left + right));
+        dictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, true, (DoubleBinaryOperation) (left, right) -> left - right));
+        dictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, true, (DoubleBinaryOperation) (left, right) -> left * right));
+        dictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, true, (DoubleBinaryOperation) (left, right) -> left / right));
+        dictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, true, (DoubleBinaryOperation) Math::pow));
+
+        dictionary.addFunction(new Function<>("sqrt", 1, true, (DoubleUnaryOperation) Math::sqrt));
+        dictionary.addFunction(new Function<>("max", true, (DoubleNaryOperation) (operands, count) -> {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                max = Math.max(max, operands[i]);
+            }
+            return max;
+        }));
+
+        return builder;
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.compiler.BytecodeCompiler;
+import in.pratanumandal.expr4j.compiler.ClosureCompiler;
+import in.pratanumandal.expr4j.compiler.RpnCompiler;
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.EvaluationContext;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ObjectBinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the evaluation backends of an expression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluationBenchmark {
+
+    @Param({"interpreter", "closure", "bytecode", "rpn"})
+    public String backend;
+
+    private Expression<Double> expression;
+
+    private Bindings<Double> bindings;
+
+    private Map<String, Double> variables;
+
+    private EvaluationContext context;
+
+    private ObjectBinder<Point, Double> binder;
+
+    private Point point;
+
+    @Setup
+    public void setup() {
+        ExpressionBuilder<Double> builder = Builders.doubleBuilder();
+        if (backend.equals("closure")) {
+            builder.setExpressionCompiler(new ClosureCompiler());
+        }
+        else if (backend.equals("bytecode")) {
+            builder.setExpressionCompiler(new BytecodeCompiler());
+        }
+        else if (backend.equals("rpn")) {
+            builder.setExpressionCompiler(new RpnCompiler());
+        }
+
+        expression = builder.build(Builders.EXPRESSION);
+
+        variables = new HashMap<>();
+        variables.put("x", 3.0);
+        variables.put("y", 4.0);
+
+        bindings = expression.bindings().setAll(variables);
+        context = new EvaluationContext();
+
+        binder = new ObjectBinder<>(expression, Point.class, Double.class);
+        point = new Point(3.0, 4.0);
+    }
+
+    @Benchmark
+    public Double evaluateMap() {
+        return expression.evaluate(variables);
+    }
+
+    @Benchmark
+    public Double evaluateBindings() {
+        return expression.evaluate(bindings, context);
+    }
+
+    @Benchmark
+    public Double evaluateMapFromObject() {
+        Map<String, Double> variables = new HashMap<>();
+        variables.put("x", point.getX());
+        variables.put("y", point.getY());
+        return expression.evaluate(variables);
+    }
+
+    @Benchmark
+    public Double evaluateObject() {
+        return binder.evaluate(point, bindings, context);
+    }
+
+    public static class Point {
+
+        private final double x;
+
+        private final double y;
+
+        public Point(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+    }
+
+}
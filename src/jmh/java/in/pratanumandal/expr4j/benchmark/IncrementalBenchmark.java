@@ -0,0 +1,80 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.EvaluationContext;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.IncrementalEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating an expression in full with evaluating it incrementally when one variable changes per evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IncrementalBenchmark {
+
+    public static final String EXPRESSION = "sqrt(a^2 + b^2) * max(c, d, e) + sqrt(f^2 + g^2) / (1 + max(h, i, j)) - k";
+
+    private Expression<Double> expression;
+
+    private Bindings<Double> bindings;
+
+    private EvaluationContext context;
+
+    private IncrementalEvaluator<Double> evaluator;
+
+    private double k;
+
+    @Setup
+    public void setup() {
+        expression = Builders.doubleBuilder().build(EXPRESSION);
+
+        bindings = expression.bindings();
+        evaluator = new IncrementalEvaluator<>(expression);
+        for (String label : expression.getVariables()) {
+            bindings.set(label, (double) label.charAt(0));
+            evaluator.set(label, (double) label.charAt(0));
+        }
+
+        context = new EvaluationContext();
+    }
+
+    @Benchmark
+    public Double evaluateFull() {
+        bindings.set("k", k++);
+        return expression.evaluate(bindings, context);
+    }
+
+    @Benchmark
+    public Double evaluateIncremental() {
+        evaluator.set("k", k++);
+        return evaluator.evaluate();
+    }
+
+}
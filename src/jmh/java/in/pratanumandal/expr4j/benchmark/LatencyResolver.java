@@ -0,0 +1,83 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.expression.AsyncVariableResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fake resolver which serves variables from a map after a fixed latency per batch, standing in for a remote store.
+ */
+public class LatencyResolver implements AsyncVariableResolver<Double> {
+
+    private final Map<String, Double> values;
+
+    private final long latencyMicros;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong fetched = new AtomicLong();
+
+    public LatencyResolver(Map<String, Double> values, long latencyMicros) {
+        this.values = values;
+        this.latencyMicros = latencyMicros;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "latency-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> resolve(Set<String> labels) {
+        batches.incrementAndGet();
+        fetched.addAndGet(labels.size());
+
+        Map<String, Double> result = new HashMap<>();
+        for (String label : labels) {
+            if (values.containsKey(label)) result.put(label, values.get(label));
+        }
+
+        CompletableFuture<Map<String, Double>> future = new CompletableFuture<>();
+        scheduler.schedule(() -> future.complete(result), latencyMicros, TimeUnit.MICROSECONDS);
+        return future;
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getFetchedCount() {
+        return fetched.get();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+}
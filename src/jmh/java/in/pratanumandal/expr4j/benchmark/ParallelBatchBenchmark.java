@@ -0,0 +1,90 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.benchmark;
+
+import in.pratanumandal.expr4j.expression.BatchError;
+import in.pratanumandal.expr4j.expression.DoubleExpression;
+import in.pratanumandal.expr4j.expression.ParallelBatchEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how parallel batch evaluation scales with the number of threads of the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParallelBatchBenchmark {
+
+    @Param({"1048576"})
+    public int rows;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private DoubleExpression expression;
+
+    private double[][] columns;
+
+    private double[] results;
+
+    private ForkJoinPool pool;
+
+    private ParallelBatchEvaluator evaluator;
+
+    @Setup
+    public void setup() {
+        expression = new DoubleExpression(Builders.primitiveBuilder().build(Builders.PRIMITIVE_EXPRESSION));
+
+        Random random = new Random(42);
+        columns = new double[expression.getVariables().size()][rows];
+        for (double[] column : columns) {
+            for (int i = 0; i < rows; i++) {
+                column[i] = random.nextDouble() * 100;
+            }
+        }
+
+        results = new double[rows];
+
+        pool = new ForkJoinPool(threads);
+        evaluator = new ParallelBatchEvaluator(pool, ParallelBatchEvaluator.DEFAULT_CHUNK_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<BatchError> evaluateParallel() {
+        return evaluator.evaluate(expression, columns, results);
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.cache;
+
+/**
+ * The <code>CacheStats</code> class is an immutable snapshot of the counters of a cache.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public final class CacheStats {
+
+    /** Number of lookups that found an entry */
+    private final long hitCount;
+
+    /** Number of lookups that did not find an entry */
+    private final long missCount;
+
+    /** Number of entries evicted to respect the maximum weight */
+    private final long evictionCount;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param hitCount Number of lookups that found an entry
+     * @param missCount Number of lookups that did not find an entry
+     * @param evictionCount Number of entries evicted to respect the maximum weight
+     */
+    public CacheStats(long hitCount, long missCount, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Get the number of lookups that found an entry.
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get the number of lookups that did not find an entry.
+     *
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get the number of entries evicted to respect the maximum weight.
+     *
+     * @return The eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Get the number of lookups.
+     *
+     * @return The request count
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Get the ratio of lookups that found an entry.
+     *
+     * @return The hit rate, or 1 if there were no lookups
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount + "}";
+    }
+
+}
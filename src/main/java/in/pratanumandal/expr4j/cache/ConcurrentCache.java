@@ -0,0 +1,460 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.cache;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The <code>ConcurrentCache&lt;K, V&gt;</code> class is a bounded, thread-safe cache.<br>
+ * Entries are stored in a <code>ConcurrentHashMap</code>, so lookups never lock and scale with the number of threads.
+ * A lookup only marks the entry as recently used; the bound is enforced by a clock (second chance) sweep
+ * that evicts the first entry not used since the sweep last passed it, approximating least recently used eviction.<br><br>
+ *
+ * The cache is bounded by the sum of the weights of its entries, as computed by a {@link Weigher}.
+ * By default every entry weighs 1, bounding the cache by the number of entries.
+ * Entries can also expire a fixed duration after they are written;
+ * an expired entry is never returned, and is removed when it is next looked up or swept.
+ * Expired entries removed are counted as evictions.
+ * Entries replaced, invalidated or expired are dropped from the clock by the next write once they outnumber the entries mapped,
+ * so the clock holds at most about twice as many entries as the cache.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <K> The type of key
+ * @param <V> The type of value
+ */
+public class ConcurrentCache<K, V> {
+
+    /** Entries by key */
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+
+    /** Entries in the order visited by the clock sweep */
+    private final Queue<Node<K, V>> clock;
+
+    /** Lock held by the thread sweeping the clock */
+    private final ReentrantLock evictionLock;
+
+    /** Maximum sum of the weights of the entries */
+    private final long maximumWeight;
+
+    /** Weigher of the entries */
+    private final Weigher<? super K, ? super V> weigher;
+
+    /** Duration after which entries expire once written in nanoseconds, or 0 if they do not expire */
+    private final long expireAfterWriteNanos;
+
+    /** Source of time for expiration */
+    private final Ticker ticker;
+
+    /** Sum of the weights of the entries */
+    private final AtomicLong weight;
+
+    /** Number of entries no longer mapped but still in the clock */
+    private final AtomicLong retired;
+
+    /** Number of lookups that found an entry */
+    private final LongAdder hits;
+
+    /** Number of lookups that did not find an entry */
+    private final LongAdder misses;
+
+    /** Number of entries evicted */
+    private final LongAdder evictions;
+
+    /**
+     * Parameterized constructor.<br>
+     * Creates a cache holding at most the specified number of entries.
+     *
+     * @param maximumSize The maximum number of entries
+     */
+    public ConcurrentCache(long maximumSize) {
+        this(maximumSize, Weigher.SINGLETON);
+    }
+
+    /**
+     * Parameterized constructor.<br>
+     * Creates a cache whose entries weigh at most the specified weight in total.
+     *
+     * @param maximumWeight The maximum sum of the weights of the entries
+     * @param weigher The weigher of the entries
+     */
+    public ConcurrentCache(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        this(maximumWeight, weigher, 0, Ticker.SYSTEM);
+    }
+
+    /**
+     * Parameterized constructor.<br>
+     * Creates a cache holding at most the specified number of entries, each of which expires the specified duration after it is written.
+     *
+     * @param maximumSize The maximum number of entries
+     * @param expireAfterWrite The duration after which entries expire
+     * @param unit The unit of the duration
+     */
+    public ConcurrentCache(long maximumSize, long expireAfterWrite, TimeUnit unit) {
+        this(maximumSize, Weigher.SINGLETON, expireAfterWrite, unit, Ticker.SYSTEM);
+    }
+
+    /**
+     * Parameterized constructor.<br>
+     * Creates a cache whose entries weigh at most the specified weight in total,
+     * each of which expires the specified duration after it is written.
+     *
+     * @param maximumWeight The maximum sum of the weights of the entries
+     * @param weigher The weigher of the entries
+     * @param expireAfterWrite The duration after which entries expire
+     * @param unit The unit of the duration
+     * @param ticker The source of time
+     */
+    public ConcurrentCache(long maximumWeight, Weigher<? super K, ? super V> weigher, long expireAfterWrite, TimeUnit unit, Ticker ticker) {
+        this(maximumWeight, weigher, expireAfterWrite > 0 ? Math.max(unit.toNanos(expireAfterWrite), 1) : -1, ticker);
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param maximumWeight The maximum sum of the weights of the entries
+     * @param weigher The weigher of the entries
+     * @param expireAfterWriteNanos The duration after which entries expire in nanoseconds, or 0 if they do not expire
+     * @param ticker The source of time
+     */
+    private ConcurrentCache(long maximumWeight, Weigher<? super K, ? super V> weigher, long expireAfterWriteNanos, Ticker ticker) {
+        if (expireAfterWriteNanos < 0) {
+            throw new Expr4jException("Expiration duration must be positive");
+        }
+        if (ticker == null) {
+            throw new Expr4jException("Ticker cannot be null");
+        }
+        if (maximumWeight < 0) {
+            throw new Expr4jException("Maximum weight cannot be negative");
+        }
+        if (weigher == null) {
+            throw new Expr4jException("Weigher cannot be null");
+        }
+
+        this.map = new ConcurrentHashMap<>();
+        this.clock = new ConcurrentLinkedQueue<>();
+        this.evictionLock = new ReentrantLock();
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.ticker = ticker;
+        this.weight = new AtomicLong();
+        this.retired = new AtomicLong();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Get the value for a key.
+     *
+     * @param key The key
+     * @return The value if present, null otherwise
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (isExpired(node)) {
+            if (map.remove(key, node)) {
+                retire(node);
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+
+        // avoid writing to a shared cache line when the entry is already marked
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    /**
+     * Get the value for a key, loading and caching it if absent.<br>
+     * The loader runs outside of any lock, so concurrent misses on the same key may each load a value; the last one is kept.
+     *
+     * @param key The key
+     * @param loader The loader of the value
+     * @return The value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Cache a value for a key, replacing the current value if any.<br>
+     * A value weighing more than the maximum weight is not cached.
+     *
+     * @param key The key
+     * @param value The value
+     */
+    public void put(K key, V value) {
+        if (key == null || value == null) {
+            throw new Expr4jException("Cache cannot contain null keys or values");
+        }
+
+        long nodeWeight = weigher.weigh(key, value);
+        if (nodeWeight < 0) {
+            throw new Expr4jException("Weight cannot be negative");
+        }
+        if (nodeWeight > maximumWeight) {
+            invalidate(key);
+            return;
+        }
+
+        Node<K, V> node = new Node<>(key, value, nodeWeight, expireAfterWriteNanos > 0 ? ticker.read() : 0);
+        weight.addAndGet(nodeWeight);
+
+        Node<K, V> previous = map.put(key, node);
+        if (previous != null) {
+            retire(previous);
+        }
+
+        clock.offer(node);
+        evict();
+    }
+
+    /**
+     * Remove the value for a key.
+     *
+     * @param key The key
+     */
+    public void invalidate(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node != null) {
+            retire(node);
+            evict();
+        }
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            Node<K, V> node;
+            while ((node = clock.poll()) != null) {
+                if (map.remove(node.key, node)) {
+                    retire(node);
+                }
+                retired.decrementAndGet();
+            }
+
+            // entries are mapped before they are offered to the clock, so remove any not offered yet from the map itself
+            for (Node<K, V> mapped : map.values()) {
+                if (map.remove(mapped.key, mapped)) {
+                    retire(mapped);
+                }
+            }
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return The number of entries
+     */
+    public long size() {
+        return map.size();
+    }
+
+    /**
+     * Get the sum of the weights of the entries.
+     *
+     * @return The weight
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    /**
+     * Get the maximum sum of the weights of the entries.
+     *
+     * @return The maximum weight
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Get the duration after which entries expire once written.
+     *
+     * @param unit The unit of the duration
+     * @return The duration, or 0 if entries do not expire
+     */
+    public long getExpireAfterWrite(TimeUnit unit) {
+        return unit.convert(expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get a snapshot of the counters of this cache.
+     *
+     * @return The counters
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * Check if an entry has expired.
+     *
+     * @param node The entry
+     * @return True if expired, false otherwise
+     */
+    private boolean isExpired(Node<K, V> node) {
+        return expireAfterWriteNanos > 0 && ticker.read() - node.writeTime >= expireAfterWriteNanos;
+    }
+
+    /**
+     * Release the weight of an entry that is no longer mapped.
+     *
+     * @param node The entry
+     */
+    private void retire(Node<K, V> node) {
+        if (node.retired.compareAndSet(false, true)) {
+            weight.addAndGet(-node.weight);
+            retired.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sweep the clock until the entries fit in the maximum weight, after dropping the retired entries if they outnumber those mapped.<br>
+     * Only one thread sweeps at a time; other threads return immediately and leave the work to it.
+     */
+    private void evict() {
+        if (retired.get() > map.size() && evictionLock.tryLock()) {
+            try {
+                clock.removeIf(node -> {
+                    if (node.retired.get()) {
+                        retired.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+
+        while (weight.get() > maximumWeight && evictionLock.tryLock()) {
+            try {
+                Node<K, V> node;
+                while (weight.get() > maximumWeight && (node = clock.poll()) != null) {
+                    if (node.retired.get()) {
+                        retired.decrementAndGet();
+                        continue;
+                    }
+
+                    if (node.referenced && !isExpired(node)) {
+                        // give the entry a second chance
+                        node.referenced = false;
+                        clock.offer(node);
+                    }
+                    else {
+                        if (map.remove(node.key, node)) {
+                            retire(node);
+                            evictions.increment();
+                        }
+                        // the entry has left the clock, and is retired whether evicted here or removed concurrently
+                        retired.decrementAndGet();
+                    }
+                }
+
+                if (clock.isEmpty()) {
+                    return;
+                }
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The <code>Node&lt;K, V&gt;</code> class represents an entry of the cache.
+     *
+     * @param <K> The type of key
+     * @param <V> The type of value
+     */
+    private static final class Node<K, V> {
+
+        /** The key */
+        private final K key;
+
+        /** The value */
+        private final V value;
+
+        /** The weight */
+        private final long weight;
+
+        /** Time at which the entry was written, if entries expire */
+        private final long writeTime;
+
+        /** Whether the entry was used since the clock last passed it */
+        private volatile boolean referenced;
+
+        /** Whether the entry is no longer mapped */
+        private final AtomicBoolean retired = new AtomicBoolean();
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param key The key
+         * @param value The value
+         * @param weight The weight
+         * @param writeTime Time at which the entry was written
+         */
+        private Node(K key, V value, long weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.cache;
+
+/**
+ * The <code>Ticker</code> interface is the source of time of a cache whose entries expire.<br>
+ * A custom ticker makes expiration deterministic, for example in tests.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    /**
+     * Ticker that reads the time from {@link System#nanoTime()}.
+     */
+    Ticker SYSTEM = System::nanoTime;
+
+    /**
+     * Read the current time.
+     *
+     * @return The time in nanoseconds, relative to an arbitrary origin
+     */
+    long read();
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.cache;
+
+/**
+ * The <code>Weigher&lt;K, V&gt;</code> interface computes the weight of a cache entry.<br>
+ * A cache bounded by weight evicts entries once the sum of their weights exceeds its maximum weight.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <K> The type of key
+ * @param <V> The type of value
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    /**
+     * Weigher that assigns a weight of 1 to every entry, bounding the cache by the number of entries.
+     */
+    Weigher<Object, Object> SINGLETON = (key, value) -> 1;
+
+    /**
+     * Compute the weight of an entry.
+     *
+     * @param key The key
+     * @param value The value
+     * @return The weight, which must not be negative
+     */
+    long weigh(K key, V value);
+
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+/**
+ * The <code>in.pratanumandal.expr4j.cache</code> package contains bounded, thread-safe caches used to avoid repeating work.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+package in.pratanumandal.expr4j.cache;
@@ -0,0 +1,410 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.compiler;
+
+import in.pratanumandal.expr4j.compiler.ClassFileWriter.Code;
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.CompiledExpression;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionCompiler;
+import in.pratanumandal.expr4j.expression.ExpressionNode;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operand;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import in.pratanumandal.expr4j.token.Variable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>BytecodeCompiler</code> class compiles every expression into a dedicated JVM class.<br>
+ * The generated class has one method per node of the expression tree.
+ * Each operation is called from its own call site on a final field, so the JVM sees monomorphic calls it can inline.
+ * The method of a shared subexpression stores its value in the bindings, so it is evaluated at most once per evaluation.<br><br>
+ *
+ * Every generated class is defined in its own class loader, so it is unloaded once the expression that owns it is no longer reachable.
+ * Expressions with more than {@link #MAX_NODES} nodes exceed the limits of a single class and are compiled by a {@link ClosureCompiler} instead.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public class BytecodeCompiler implements ExpressionCompiler {
+
+    /**
+     * Maximum number of nodes compiled into a single class.
+     */
+    public static final int MAX_NODES = 4096;
+
+    /** Internal name of Object */
+    private static final String OBJECT = "java/lang/Object";
+
+    /** Internal name of List */
+    private static final String LIST = "java/util/List";
+
+    /** Internal name of Bindings */
+    private static final String BINDINGS = "in/pratanumandal/expr4j/expression/Bindings";
+
+    /** Internal name of EvaluationContext */
+    private static final String CONTEXT = "in/pratanumandal/expr4j/expression/EvaluationContext";
+
+    /** Internal name of ParameterEvaluator */
+    private static final String PARAMETER_EVALUATOR = "in/pratanumandal/expr4j/expression/ParameterEvaluator";
+
+    /** Internal name of CompiledExpression */
+    private static final String COMPILED_EXPRESSION = "in/pratanumandal/expr4j/expression/CompiledExpression";
+
+    /** Internal name of Operation */
+    private static final String OPERATION = "in/pratanumandal/expr4j/token/Operation";
+
+    /** Internal name of Expr4jException */
+    private static final String EXCEPTION = "in/pratanumandal/expr4j/exception/Expr4jException";
+
+    /** Descriptor of the methods evaluating a node */
+    private static final String NODE_DESCRIPTOR = "(L" + BINDINGS + ";L" + CONTEXT + ";)Ljava/lang/Object;";
+
+    /**
+     * Counter used to name the generated classes.
+     */
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    /**
+     * Compiler used for expressions too large for a single class.
+     */
+    private final ClosureCompiler fallback = new ClosureCompiler();
+
+    /**
+     * No-Argument Constructor.
+     */
+    public BytecodeCompiler() {
+    }
+
+    @Override
+    public <T> CompiledExpression<T> compile(Expression<T> expression) {
+        if (expression.root == null) {
+            throw new Expr4jException("Invalid expression");
+        }
+
+        // number the nodes in breadth first order
+        List<ExpressionNode> nodes = new ArrayList<>();
+        nodes.add(expression.root);
+        for (int i = 0; i < nodes.size(); i++) {
+            ExpressionNode node = nodes.get(i);
+            if (node.children != null) {
+                validate(node);
+                nodes.addAll(node.children);
+            }
+            if (nodes.size() > MAX_NODES) {
+                return fallback.compile(expression);
+            }
+        }
+
+        String name = "in/pratanumandal/expr4j/compiler/GeneratedExpression" + COUNTER.incrementAndGet();
+        List<Object> arguments = new ArrayList<>();
+        byte[] bytes = this.generate(name, nodes, arguments);
+
+        try {
+            GeneratedClassLoader loader = new GeneratedClassLoader(BytecodeCompiler.class.getClassLoader());
+            Class<?> generated = loader.define(name.replace('/', '.'), bytes);
+
+            @SuppressWarnings("unchecked")
+            CompiledExpression<T> compiled = (CompiledExpression<T>) generated.getConstructor(Object[].class)
+                    .newInstance((Object) arguments.toArray());
+            return compiled;
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            throw new Expr4jException("Failed to compile expression", e);
+        }
+    }
+
+    /**
+     * Validate the number of children of a node.
+     *
+     * @param node The node
+     */
+    private void validate(ExpressionNode node) {
+        int operandCount;
+        if (node.token instanceof Function) {
+            operandCount = ((Function<?>) node.token).parameters;
+        }
+        else {
+            Operator<?> operator = (Operator<?>) node.token;
+            operandCount = (operator.type == OperatorType.INFIX || operator.type == OperatorType.INFIX_RTL) ? 2 : 1;
+        }
+
+        if (node.children.size() != operandCount) {
+            throw new Expr4jException("Invalid expression");
+        }
+    }
+
+    /**
+     * Generate the class for an expression.
+     *
+     * @param name Internal name of the class
+     * @param nodes Nodes of the expression tree in breadth first order
+     * @param arguments List to which the values of the fields are added in the order expected by the constructor
+     * @return The bytes of the class file
+     */
+    private byte[] generate(String name, List<ExpressionNode> nodes, List<Object> arguments) {
+        ClassFileWriter writer = new ClassFileWriter(name, OBJECT, COMPILED_EXPRESSION, PARAMETER_EVALUATOR);
+
+        // constructor assigning the fields from an array of arguments
+        Code init = new Code(4, 2);
+        init.op(Code.ALOAD_0).op2(Code.INVOKESPECIAL, writer.methodRef(OBJECT, "<init>", "()V"));
+
+        int child = 1;
+        for (int i = 0; i < nodes.size(); i++) {
+            ExpressionNode node = nodes.get(i);
+
+            if (node.token instanceof Function || node.token instanceof Operator) {
+                Object operation = node.token instanceof Function ?
+                        ((Function<?>) node.token).operation :
+                        ((Operator<?>) node.token).operation;
+
+                List<Integer> targets = new ArrayList<>();
+                for (int j = 0; j < node.children.size(); j++) {
+                    targets.add(child++);
+                }
+
+                assignField(writer, init, name, "o" + i, "L" + OPERATION + ";", OPERATION, arguments, operation);
+                assignField(writer, init, name, "t" + i, "L" + LIST + ";", LIST, arguments, Collections.unmodifiableList(targets));
+
+                // the unshared body of a shared node is dispatched after the nodes
+                if (node.getShared() != ExpressionNode.NOT_SHARED) {
+                    assignField(writer, init, name, "s" + i, "L" + OBJECT + ";", OBJECT, arguments, nodes.size() + i);
+                }
+            }
+            else if (node.token instanceof Operand) {
+                assignField(writer, init, name, "k" + i, "L" + OBJECT + ";", OBJECT, arguments, ((Operand<?>) node.token).value);
+            }
+        }
+
+        init.op(Code.RETURN);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", init);
+
+        // one method per node, plus one for the body of each shared node
+        for (int i = 0; i < nodes.size(); i++) {
+            ExpressionNode node = nodes.get(i);
+            if (isShared(node)) {
+                writer.addMethod(ClassFileWriter.ACC_PRIVATE, "n" + i, NODE_DESCRIPTOR, sharedCode(writer, name, node, i));
+                writer.addMethod(ClassFileWriter.ACC_PRIVATE, "b" + i, NODE_DESCRIPTOR, nodeCode(writer, name, node, i));
+            }
+            else {
+                writer.addMethod(ClassFileWriter.ACC_PRIVATE, "n" + i, NODE_DESCRIPTOR, nodeCode(writer, name, node, i));
+            }
+        }
+
+        // evaluate the whole expression
+        Code evaluate = new Code(3, 3);
+        evaluate.op(Code.ALOAD_0).op1(Code.ALOAD, 1).op1(Code.ALOAD, 2)
+                .op2(Code.INVOKESPECIAL, writer.methodRef(name, "n0", NODE_DESCRIPTOR))
+                .op(Code.ARETURN);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "evaluate", NODE_DESCRIPTOR, evaluate);
+
+        // evaluate the target of a lazy parameter
+        Code dispatch = new Code(3, 4);
+        dispatch.op1(Code.ALOAD, 1)
+                .op2(Code.CHECKCAST, writer.classRef("java/lang/Integer"))
+                .op2(Code.INVOKEVIRTUAL, writer.methodRef("java/lang/Integer", "intValue", "()I"));
+        int tableSwitch = dispatch.tableSwitch(2 * nodes.size());
+        List<Integer> unused = new ArrayList<>();
+        for (int key = 0; key < 2 * nodes.size(); key++) {
+            int i = key % nodes.size();
+            if (key >= nodes.size() && !isShared(nodes.get(i))) {
+                unused.add(key);
+                continue;
+            }
+
+            dispatch.patchSwitch(tableSwitch, key, dispatch.position());
+            dispatch.op(Code.ALOAD_0).op1(Code.ALOAD, 2).op1(Code.ALOAD, 3)
+                    .op2(Code.INVOKESPECIAL, writer.methodRef(name, (key < nodes.size() ? "n" : "b") + i, NODE_DESCRIPTOR))
+                    .op(Code.ARETURN);
+        }
+        dispatch.patchSwitch(tableSwitch, -1, dispatch.position());
+        for (int key : unused) {
+            dispatch.patchSwitch(tableSwitch, key, dispatch.position());
+        }
+        dispatch.op2(Code.NEW, writer.classRef(EXCEPTION))
+                .op(Code.DUP)
+                .pushString(writer, "Invalid expression")
+                .op2(Code.INVOKESPECIAL, writer.methodRef(EXCEPTION, "<init>", "(Ljava/lang/String;)V"))
+                .op(Code.ATHROW);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "evaluate",
+                "(Ljava/lang/Object;L" + BINDINGS + ";L" + CONTEXT + ";)Ljava/lang/Object;", dispatch);
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Declare a final field and assign it in the constructor.
+     *
+     * @param writer The class file writer
+     * @param init Code of the constructor
+     * @param owner Internal name of the class
+     * @param field Name of the field
+     * @param descriptor Descriptor of the field
+     * @param type Internal name of the type of the field
+     * @param arguments Values of the fields in the order expected by the constructor
+     * @param value Value of the field
+     */
+    private void assignField(ClassFileWriter writer, Code init, String owner, String field, String descriptor,
+                             String type, List<Object> arguments, Object value) {
+        writer.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, field, descriptor);
+
+        init.op(Code.ALOAD_0).op1(Code.ALOAD, 1).pushInt(writer, arguments.size()).op(Code.AALOAD);
+        if (!type.equals(OBJECT)) {
+            init.op2(Code.CHECKCAST, writer.classRef(type));
+        }
+        init.op2(Code.PUTFIELD, writer.fieldRef(owner, field, descriptor));
+
+        arguments.add(value);
+    }
+
+    /**
+     * Check if a node is an operation whose value is shared.
+     *
+     * @param node The node
+     * @return True if shared, false otherwise
+     */
+    private static boolean isShared(ExpressionNode node) {
+        return node.children != null && node.getShared() != ExpressionNode.NOT_SHARED;
+    }
+
+    /**
+     * Generate the code evaluating a shared node, which evaluates the body of the node only if its value is not stored yet.
+     *
+     * @param writer The class file writer
+     * @param owner Internal name of the class
+     * @param node The node
+     * @param index Index of the node
+     * @return The code
+     */
+    private Code sharedCode(ClassFileWriter writer, String owner, ExpressionNode node, int index) {
+        Code code = new Code(5, 3);
+
+        // return bindings.evaluateShared(shared, this, body, context)
+        return code.op1(Code.ALOAD, 1)
+                .pushInt(writer, node.getShared())
+                .op(Code.ALOAD_0)
+                .op(Code.ALOAD_0)
+                .op2(Code.GETFIELD, writer.fieldRef(owner, "s" + index, "L" + OBJECT + ";"))
+                .op1(Code.ALOAD, 2)
+                .op2(Code.INVOKEVIRTUAL, writer.methodRef(BINDINGS, "evaluateShared",
+                        "(IL" + PARAMETER_EVALUATOR + ";L" + OBJECT + ";L" + CONTEXT + ";)Ljava/lang/Object;"))
+                .op(Code.ARETURN);
+    }
+
+    /**
+     * Generate the code evaluating a node.
+     *
+     * @param writer The class file writer
+     * @param owner Internal name of the class
+     * @param node The node
+     * @param index Index of the node
+     * @return The code
+     */
+    private Code nodeCode(ClassFileWriter writer, String owner, ExpressionNode node, int index) {
+        // encountered variable
+        if (node.token instanceof Variable) {
+            Variable variable = (Variable) node.token;
+            Code code = new Code(2, 3);
+
+            code.op1(Code.ALOAD, 1);
+            if (variable.slot == Variable.UNRESOLVED) {
+                code.pushString(writer, variable.label)
+                        .op2(Code.INVOKEVIRTUAL, writer.methodRef(BINDINGS, "get", "(Ljava/lang/String;)Ljava/lang/Object;"));
+            }
+            else {
+                code.pushInt(writer, variable.slot)
+                        .op2(Code.INVOKEVIRTUAL, writer.methodRef(BINDINGS, "get", "(I)Ljava/lang/Object;"));
+            }
+            return code.op(Code.ARETURN);
+        }
+
+        // encountered function or operator
+        else if (node.token instanceof Function || node.token instanceof Operator) {
+            Code code = new Code(4, 5);
+
+            // List parameters = context.push(this, targets, bindings)
+            code.op1(Code.ALOAD, 2).op(Code.ALOAD_0).op(Code.ALOAD_0)
+                    .op2(Code.GETFIELD, writer.fieldRef(owner, "t" + index, "L" + LIST + ";"))
+                    .op1(Code.ALOAD, 1)
+                    .op2(Code.INVOKEVIRTUAL, writer.methodRef(CONTEXT, "push",
+                            "(L" + PARAMETER_EVALUATOR + ";L" + LIST + ";L" + BINDINGS + ";)L" + LIST + ";"))
+                    .op1(Code.ASTORE, 3);
+
+            // Object result = operation.execute(parameters)
+            int start = code.position();
+            code.op(Code.ALOAD_0)
+                    .op2(Code.GETFIELD, writer.fieldRef(owner, "o" + index, "L" + OPERATION + ";"))
+                    .op1(Code.ALOAD, 3)
+                    .invokeInterface(writer.interfaceMethodRef(OPERATION, "execute", "(L" + LIST + ";)Ljava/lang/Object;"), 2);
+            int end = code.position();
+
+            // context.pop(parameters); return result
+            int pop = writer.methodRef(CONTEXT, "pop", "(L" + LIST + ";)V");
+            code.op1(Code.ALOAD, 2).op1(Code.ALOAD, 3).op2(Code.INVOKEVIRTUAL, pop).op(Code.ARETURN);
+
+            // finally context.pop(parameters); rethrow
+            int handler = code.position();
+            code.op1(Code.ASTORE, 4).op1(Code.ALOAD, 2).op1(Code.ALOAD, 3).op2(Code.INVOKEVIRTUAL, pop).op1(Code.ALOAD, 4).op(Code.ATHROW);
+            code.addHandler(start, end, handler);
+
+            return code;
+        }
+
+        // encountered operand
+        else {
+            Code code = new Code(1, 3);
+            return code.op(Code.ALOAD_0)
+                    .op2(Code.GETFIELD, writer.fieldRef(owner, "k" + index, "L" + OBJECT + ";"))
+                    .op(Code.ARETURN);
+        }
+    }
+
+    /**
+     * The <code>GeneratedClassLoader</code> class defines a single generated class.
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param parent The parent class loader
+         */
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        /**
+         * Define a class.
+         *
+         * @param name Binary name of the class
+         * @param bytes The bytes of the class file
+         * @return The class
+         */
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
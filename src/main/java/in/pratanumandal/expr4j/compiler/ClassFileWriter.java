@@ -0,0 +1,665 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>ClassFileWriter</code> class writes minimal JVM class files.<br>
+ * It supports exactly what the {@link BytecodeCompiler} needs: a constant pool, fields, and methods with code and exception tables.
+ * Classes are written with class file version 49, which the JVM verifies without stack map frames.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+final class ClassFileWriter {
+
+    /** Access flag public */
+    static final int ACC_PUBLIC = 0x0001;
+
+    /** Access flag private */
+    static final int ACC_PRIVATE = 0x0002;
+
+    /** Access flag final */
+    static final int ACC_FINAL = 0x0010;
+
+    /** Access flag super */
+    static final int ACC_SUPER = 0x0020;
+
+    /** Constant pool tag for UTF-8 strings */
+    private static final int CONSTANT_UTF8 = 1;
+
+    /** Constant pool tag for integers */
+    private static final int CONSTANT_INTEGER = 3;
+
+    /** Constant pool tag for classes */
+    private static final int CONSTANT_CLASS = 7;
+
+    /** Constant pool tag for strings */
+    private static final int CONSTANT_STRING = 8;
+
+    /** Constant pool tag for field references */
+    private static final int CONSTANT_FIELDREF = 9;
+
+    /** Constant pool tag for method references */
+    private static final int CONSTANT_METHODREF = 10;
+
+    /** Constant pool tag for interface method references */
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+    /** Constant pool tag for name and type descriptors */
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /**
+     * Serialized constant pool entries.
+     */
+    private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+
+    /**
+     * Indexes of the constant pool entries, keyed by their serialized form.
+     */
+    private final Map<String, Integer> constantIndexes = new HashMap<>();
+
+    /**
+     * Number of constant pool entries plus one.
+     */
+    private int constantCount = 1;
+
+    /**
+     * Serialized fields.
+     */
+    private final List<byte[]> fields = new ArrayList<>();
+
+    /**
+     * Serialized methods.
+     */
+    private final List<byte[]> methods = new ArrayList<>();
+
+    /**
+     * Internal name of the class.
+     */
+    private final String name;
+
+    /**
+     * Internal name of the super class.
+     */
+    private final String superName;
+
+    /**
+     * Internal names of the implemented interfaces.
+     */
+    private final String[] interfaces;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param name Internal name of the class
+     * @param superName Internal name of the super class
+     * @param interfaces Internal names of the implemented interfaces
+     */
+    ClassFileWriter(String name, String superName, String... interfaces) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+    }
+
+    /**
+     * Add a UTF-8 string to the constant pool.
+     *
+     * @param value The string
+     * @return The index of the constant
+     */
+    int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    /**
+     * Add an integer to the constant pool.
+     *
+     * @param value The integer
+     * @return The index of the constant
+     */
+    int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    /**
+     * Add a class reference to the constant pool.
+     *
+     * @param internalName Internal name of the class
+     * @return The index of the constant
+     */
+    int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    /**
+     * Add a string literal to the constant pool.
+     *
+     * @param value The string
+     * @return The index of the constant
+     */
+    int string(String value) {
+        int valueIndex = utf8(value);
+        return constant("S" + value, out -> {
+            out.writeByte(CONSTANT_STRING);
+            out.writeShort(valueIndex);
+        });
+    }
+
+    /**
+     * Add a field reference to the constant pool.
+     *
+     * @param owner Internal name of the owner class
+     * @param name Name of the field
+     * @param descriptor Descriptor of the field
+     * @return The index of the constant
+     */
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    /**
+     * Add a method reference to the constant pool.
+     *
+     * @param owner Internal name of the owner class
+     * @param name Name of the method
+     * @param descriptor Descriptor of the method
+     * @return The index of the constant
+     */
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Add an interface method reference to the constant pool.
+     *
+     * @param owner Internal name of the owner interface
+     * @param name Name of the method
+     * @param descriptor Descriptor of the method
+     * @return The index of the constant
+     */
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Add a field, method, or interface method reference to the constant pool.
+     *
+     * @param tag The constant pool tag
+     * @param owner Internal name of the owner
+     * @param name Name of the member
+     * @param descriptor Descriptor of the member
+     * @return The index of the constant
+     */
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int classIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndTypeIndex = constant("N" + name + " " + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + tag + owner + "." + name + " " + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(classIndex);
+            out.writeShort(nameAndTypeIndex);
+        });
+    }
+
+    /**
+     * Add a constant to the constant pool unless an equal constant is already present.
+     *
+     * @param key Serialized form of the constant
+     * @param writer Writer of the constant
+     * @return The index of the constant
+     */
+    private int constant(String key, ConstantWriter writer) {
+        Integer index = constantIndexes.get(key);
+        if (index == null) {
+            DataOutputStream out = new DataOutputStream(constantPool);
+            try {
+                writer.write(out);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            index = constantCount++;
+            constantIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Add a field.
+     *
+     * @param access Access flags
+     * @param name Name of the field
+     * @param descriptor Descriptor of the field
+     */
+    void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Add a method.
+     *
+     * @param access Access flags
+     * @param name Name of the method
+     * @param descriptor Descriptor of the method
+     * @param code Code of the method
+     */
+    void addMethod(int access, String name, String descriptor, Code code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+
+            byte[] instructions = code.toByteArray();
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + instructions.length + 8 * code.handlers.size());
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            out.writeShort(code.handlers.size());
+            for (int[] handler : code.handlers) {
+                out.writeShort(handler[0]);
+                out.writeShort(handler[1]);
+                out.writeShort(handler[2]);
+                out.writeShort(handler[3]);
+            }
+            out.writeShort(0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * Write the class file.
+     *
+     * @return The bytes of the class file
+     */
+    byte[] toByteArray() {
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+        int[] interfaceIndexes = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceIndexes[i] = classRef(interfaces[i]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(constantCount);
+            constantPool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(interfaceIndexes.length);
+            for (int index : interfaceIndexes) {
+                out.writeShort(index);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The <code>ConstantWriter</code> interface writes a constant pool entry.
+     */
+    private interface ConstantWriter {
+
+        /**
+         * Write the constant pool entry.
+         *
+         * @param out The output stream
+         * @throws IOException If an I/O error occurs
+         */
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+    /**
+     * The <code>Code</code> class assembles the instructions of a method.
+     */
+    static final class Code {
+
+        /** Instruction aload_0 */
+        static final int ALOAD_0 = 0x2a;
+
+        /** Instruction aload */
+        static final int ALOAD = 0x19;
+
+        /** Instruction astore */
+        static final int ASTORE = 0x3a;
+
+        /** Instruction aaload */
+        static final int AALOAD = 0x32;
+
+        /** Instruction areturn */
+        static final int ARETURN = 0xb0;
+
+        /** Instruction return */
+        static final int RETURN = 0xb1;
+
+        /** Instruction getfield */
+        static final int GETFIELD = 0xb4;
+
+        /** Instruction putfield */
+        static final int PUTFIELD = 0xb5;
+
+        /** Instruction invokevirtual */
+        static final int INVOKEVIRTUAL = 0xb6;
+
+        /** Instruction invokespecial */
+        static final int INVOKESPECIAL = 0xb7;
+
+        /** Instruction invokeinterface */
+        static final int INVOKEINTERFACE = 0xb9;
+
+        /** Instruction new */
+        static final int NEW = 0xbb;
+
+        /** Instruction dup */
+        static final int DUP = 0x59;
+
+        /** Instruction athrow */
+        static final int ATHROW = 0xbf;
+
+        /** Instruction checkcast */
+        static final int CHECKCAST = 0xc0;
+
+        /** Instruction tableswitch */
+        static final int TABLESWITCH = 0xaa;
+
+        /**
+         * The instructions.
+         */
+        private byte[] bytes = new byte[64];
+
+        /**
+         * Number of bytes of instructions.
+         */
+        private int length;
+
+        /**
+         * Exception handlers as start, end, handler and catch type.
+         */
+        private final List<int[]> handlers = new ArrayList<>();
+
+        /**
+         * Maximum depth of the operand stack.
+         */
+        private final int maxStack;
+
+        /**
+         * Maximum number of local variables.
+         */
+        private final int maxLocals;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param maxStack Maximum depth of the operand stack
+         * @param maxLocals Maximum number of local variables
+         */
+        Code(int maxStack, int maxLocals) {
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        /**
+         * Get the offset of the next instruction.
+         *
+         * @return The offset
+         */
+        int position() {
+            return length;
+        }
+
+        /**
+         * Emit an instruction without operands.
+         *
+         * @param opcode The opcode
+         * @return This code
+         */
+        Code op(int opcode) {
+            u1(opcode);
+            return this;
+        }
+
+        /**
+         * Emit an instruction with an unsigned byte operand, such as a local variable index.
+         *
+         * @param opcode The opcode
+         * @param operand The operand
+         * @return This code
+         */
+        Code op1(int opcode, int operand) {
+            u1(opcode);
+            u1(operand);
+            return this;
+        }
+
+        /**
+         * Emit an instruction with an unsigned short operand, such as a constant pool index.
+         *
+         * @param opcode The opcode
+         * @param operand The operand
+         * @return This code
+         */
+        Code op2(int opcode, int operand) {
+            u1(opcode);
+            u2(operand);
+            return this;
+        }
+
+        /**
+         * Emit an invokeinterface instruction.
+         *
+         * @param index Constant pool index of the interface method
+         * @param count Number of argument slots including the receiver
+         * @return This code
+         */
+        Code invokeInterface(int index, int count) {
+            op2(INVOKEINTERFACE, index);
+            u1(count);
+            u1(0);
+            return this;
+        }
+
+        /**
+         * Emit an instruction pushing an int constant.
+         *
+         * @param writer The class file writer owning the constant pool
+         * @param value The value
+         * @return This code
+         */
+        Code pushInt(ClassFileWriter writer, int value) {
+            if (value >= -1 && value <= 5) {
+                return op(0x03 + value);
+            }
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                return op1(0x10, value & 0xff);
+            }
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                return op2(0x11, value & 0xffff);
+            }
+            else {
+                return op2(0x13, writer.integer(value));
+            }
+        }
+
+        /**
+         * Emit an instruction pushing a string constant.
+         *
+         * @param writer The class file writer owning the constant pool
+         * @param value The value
+         * @return This code
+         */
+        Code pushString(ClassFileWriter writer, String value) {
+            return op2(0x13, writer.string(value));
+        }
+
+        /**
+         * Emit a tableswitch instruction over the keys 0 to n - 1.<br>
+         * The jump offsets are filled in later with {@link #patchSwitch(int, int, int)}.
+         *
+         * @param count Number of keys
+         * @return Offset of the tableswitch instruction
+         */
+        int tableSwitch(int count) {
+            int start = position();
+            u1(TABLESWITCH);
+            while (position() % 4 != 0) {
+                u1(0);
+            }
+            u4(0);
+            u4(0);
+            u4(count - 1);
+            for (int i = 0; i < count; i++) {
+                u4(0);
+            }
+            return start;
+        }
+
+        /**
+         * Set a jump target of a tableswitch instruction.
+         *
+         * @param start Offset of the tableswitch instruction
+         * @param key The key, or -1 for the default target
+         * @param target Offset of the target instruction
+         */
+        void patchSwitch(int start, int key, int target) {
+            int table = (start + 4) & ~3;
+            int at = key < 0 ? table : table + 12 + 4 * key;
+            int offset = target - start;
+            bytes[at] = (byte) (offset >>> 24);
+            bytes[at + 1] = (byte) (offset >>> 16);
+            bytes[at + 2] = (byte) (offset >>> 8);
+            bytes[at + 3] = (byte) offset;
+        }
+
+        /**
+         * Add an exception handler catching any throwable.
+         *
+         * @param start Offset of the first protected instruction
+         * @param end Offset after the last protected instruction
+         * @param handler Offset of the handler
+         */
+        void addHandler(int start, int end, int handler) {
+            handlers.add(new int[] {start, end, handler, 0});
+        }
+
+        /**
+         * Get the instructions.
+         *
+         * @return The bytes of the instructions
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        /**
+         * Write a byte.
+         *
+         * @param value The value
+         */
+        private void u1(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Write an unsigned short.
+         *
+         * @param value The value
+         */
+        private void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        /**
+         * Write an int.
+         *
+         * @param value The value
+         */
+        private void u4(int value) {
+            u1(value >>> 24);
+            u1(value >>> 16);
+            u1(value >>> 8);
+            u1(value);
+        }
+
+    }
+
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.compiler;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.CompiledExpression;
+import in.pratanumandal.expr4j.expression.EvaluationContext;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionCompiler;
+import in.pratanumandal.expr4j.expression.ExpressionNode;
+import in.pratanumandal.expr4j.expression.ParameterEvaluator;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operand;
+import in.pratanumandal.expr4j.token.Operation;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import in.pratanumandal.expr4j.token.Variable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>ClosureCompiler</code> class compiles the tree of an expression into a tree of closures.<br>
+ * Every node is turned into a closure specialized for its token, such as a variable loader, a constant, or a call bound directly to an operation.
+ * Type tests and arity checks are performed once during compilation, so evaluating the closures performs neither.
+ * The closure of a shared subexpression stores its value in the bindings, so it is evaluated at most once per evaluation.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public class ClosureCompiler implements ExpressionCompiler {
+
+    /**
+     * No-Argument Constructor.
+     */
+    public ClosureCompiler() {
+    }
+
+    @Override
+    public <T> CompiledExpression<T> compile(Expression<T> expression) {
+        if (expression.root == null) {
+            throw new Expr4jException("Invalid expression");
+        }
+        return this.compile(expression.root);
+    }
+
+    /**
+     * Recursively compile a node of the expression tree.
+     *
+     * @param node Current node of the expression tree
+     * @param <T> The type of operand
+     * @return The closure
+     */
+    private <T> Closure<T> compile(ExpressionNode node) {
+        Closure<T> closure = this.compileNode(node);
+        if (node.getShared() != ExpressionNode.NOT_SHARED) {
+            return new Shared<>(node.getShared(), closure);
+        }
+        return closure;
+    }
+
+    /**
+     * Compile a node of the expression tree, without sharing its value.
+     *
+     * @param node Current node of the expression tree
+     * @param <T> The type of operand
+     * @return The closure
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Closure<T> compileNode(ExpressionNode node) {
+        // encountered variable
+        if (node.token instanceof Variable) {
+            Variable variable = (Variable) node.token;
+
+            if (variable.slot == Variable.UNRESOLVED) {
+                return new LabelLoader<>(variable.label);
+            }
+
+            return new SlotLoader<>(variable.slot);
+        }
+
+        // encountered function
+        else if (node.token instanceof Function) {
+            Function<T> function = (Function<T>) node.token;
+
+            if (node.children.size() != function.parameters) {
+                throw new Expr4jException("Invalid expression");
+            }
+
+            return new Call<>(function.operation, this.compileChildren(node));
+        }
+
+        // encountered operator
+        else if (node.token instanceof Operator) {
+            Operator<T> operator = (Operator<T>) node.token;
+
+            int operandCount = (operator.type == OperatorType.INFIX || operator.type == OperatorType.INFIX_RTL) ? 2 : 1;
+            if (node.children.size() != operandCount) {
+                throw new Expr4jException("Invalid expression");
+            }
+
+            return new Call<>(operator.operation, this.compileChildren(node));
+        }
+
+        // encountered operand
+        else {
+            return new Value<>(((Operand<T>) node.token).value);
+        }
+    }
+
+    /**
+     * Compile the children of a node of the expression tree.
+     *
+     * @param node Current node of the expression tree
+     * @param <T> The type of operand
+     * @return The list of closures
+     */
+    private <T> List<Closure<T>> compileChildren(ExpressionNode node) {
+        List<Closure<T>> children = new ArrayList<>(node.children.size());
+        for (ExpressionNode child : node.children) {
+            children.add(this.compile(child));
+        }
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * The <code>Closure&lt;T&gt;</code> class represents a compiled node of the expression tree.
+     *
+     * @param <T> The type of operand
+     */
+    private static abstract class Closure<T> implements CompiledExpression<T> {
+    }
+
+    /**
+     * The <code>SlotLoader&lt;T&gt;</code> class loads the value of a variable from its slot.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class SlotLoader<T> extends Closure<T> {
+
+        /**
+         * Slot of the variable.
+         */
+        private final int slot;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param slot Slot of the variable
+         */
+        private SlotLoader(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public T evaluate(Bindings<T> bindings, EvaluationContext context) {
+            return bindings.get(slot);
+        }
+
+    }
+
+    /**
+     * The <code>LabelLoader&lt;T&gt;</code> class loads the value of a variable which has not been assigned a slot.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class LabelLoader<T> extends Closure<T> {
+
+        /**
+         * Label of the variable.
+         */
+        private final String label;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param label Label of the variable
+         */
+        private LabelLoader(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public T evaluate(Bindings<T> bindings, EvaluationContext context) {
+            return bindings.get(label);
+        }
+
+    }
+
+    /**
+     * The <code>Value&lt;T&gt;</code> class returns the value of an operand or constant.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class Value<T> extends Closure<T> {
+
+        /**
+         * The value.
+         */
+        private final T value;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param value The value
+         */
+        private Value(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public T evaluate(Bindings<T> bindings, EvaluationContext context) {
+            return value;
+        }
+
+    }
+
+    /**
+     * The <code>Shared&lt;T&gt;</code> class evaluates a shared subexpression at most once per evaluation.<br>
+     * The shared closure is also the evaluator of the closure of the subexpression.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class Shared<T> extends Closure<T> implements ParameterEvaluator<T> {
+
+        /**
+         * Index of the shared subexpression.
+         */
+        private final int index;
+
+        /**
+         * Closure of the subexpression.
+         */
+        private final Closure<T> closure;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param index Index of the shared subexpression
+         * @param closure Closure of the subexpression
+         */
+        private Shared(int index, Closure<T> closure) {
+            this.index = index;
+            this.closure = closure;
+        }
+
+        @Override
+        public T evaluate(Bindings<T> bindings, EvaluationContext context) {
+            return bindings.evaluateShared(index, this, closure, context);
+        }
+
+        @Override
+        public T evaluate(Object target, Bindings<T> bindings, EvaluationContext context) {
+            return closure.evaluate(bindings, context);
+        }
+
+    }
+
+    /**
+     * The <code>Call&lt;T&gt;</code> class executes an operation with its parameters bound to compiled closures.<br>
+     * The call is also the evaluator of its parameters, whose targets are its child closures.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class Call<T> extends Closure<T> implements ParameterEvaluator<T> {
+
+        /**
+         * The operation.
+         */
+        private final Operation<T> operation;
+
+        /**
+         * Closures of the parameters.
+         */
+        private final List<Closure<T>> children;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param operation The operation
+         * @param children Closures of the parameters
+         */
+        private Call(Operation<T> operation, List<Closure<T>> children) {
+            this.operation = operation;
+            this.children = children;
+        }
+
+        @Override
+        public T evaluate(Bindings<T> bindings, EvaluationContext context) {
+            return context.execute(operation, this, children, bindings);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T evaluate(Object target, Bindings<T> bindings, EvaluationContext context) {
+            return ((Closure<T>) target).evaluate(bindings, context);
+        }
+
+    }
+
+}
@@ -0,0 +1,592 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.compiler;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.CompiledExpression;
+import in.pratanumandal.expr4j.expression.EvaluationContext;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionCompiler;
+import in.pratanumandal.expr4j.expression.ExpressionNode;
+import in.pratanumandal.expr4j.expression.ParameterEvaluator;
+import in.pratanumandal.expr4j.token.EagerOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operand;
+import in.pratanumandal.expr4j.token.Operation;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import in.pratanumandal.expr4j.token.Variable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The <code>RpnCompiler</code> class compiles the tree of an expression into a flat program in postfix (RPN) order.<br>
+ * The program is a single <code>int[]</code> holding one instruction per node, plus tables of values, labels, call sites and shared subexpressions.
+ * Each instruction packs its opcode in the low byte and the index into the relevant table, or the address to jump to, in the remaining bits.<br><br>
+ *
+ * The program is executed by a loop over a value stack, which is reused by every program evaluated on the same thread.
+ * The operands of an {@link EagerOperation} are evaluated by the loop itself and passed to the operation already evaluated.
+ * The operands of any other operation are laid out in line after a jump over them,
+ * and each range of instructions is only executed when the operation requests the value of that operand,
+ * so operations that short-circuit skip the instructions of the operands they never use.
+ * The instructions of a shared subexpression are also jumped over, and executed only if its value is not stored in the bindings yet.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public class RpnCompiler implements ExpressionCompiler {
+
+    /** Opcode to push a value from the value table */
+    private static final int LOAD_VALUE = 0;
+
+    /** Opcode to push a variable from its slot */
+    private static final int LOAD_SLOT = 1;
+
+    /** Opcode to push a variable by its label */
+    private static final int LOAD_LABEL = 2;
+
+    /** Opcode to pop the operands of an eager operation and push its result */
+    private static final int APPLY = 3;
+
+    /** Opcode to call an operation with lazy operands and push its result */
+    private static final int CALL = 4;
+
+    /** Opcode to jump to an address */
+    private static final int JUMP = 5;
+
+    /** Opcode to push the value of a shared subexpression, executing its instructions if the value is not stored yet */
+    private static final int SHARED = 6;
+
+    /** Number of bits holding the opcode */
+    private static final int OPCODE_BITS = 8;
+
+    /** Mask to extract the opcode */
+    private static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+
+    /** Value stack of the current thread */
+    private static final ThreadLocal<Machine> MACHINE = ThreadLocal.withInitial(Machine::new);
+
+    /**
+     * No-Argument Constructor.
+     */
+    public RpnCompiler() {
+    }
+
+    @Override
+    public <T> CompiledExpression<T> compile(Expression<T> expression) {
+        if (expression.root == null) {
+            throw new Expr4jException("Invalid expression");
+        }
+
+        Assembler assembler = new Assembler();
+        assembler.emit(expression.root);
+
+        return new Program<>(
+                Arrays.copyOf(assembler.code, assembler.length),
+                assembler.values.toArray(),
+                assembler.labels.toArray(new String[0]),
+                assembler.sites.toArray(new Site[0]),
+                assembler.shared.toArray(new Shared[0]),
+                assembler.maxDepth);
+    }
+
+    /**
+     * The <code>Assembler</code> class lays out the nodes of an expression tree in postfix order.
+     */
+    private static final class Assembler {
+
+        /** The instructions */
+        private int[] code = new int[16];
+
+        /** Number of instructions */
+        private int length;
+
+        /** Table of values */
+        private final List<Object> values = new ArrayList<>();
+
+        /** Table of labels */
+        private final List<String> labels = new ArrayList<>();
+
+        /** Table of call sites */
+        private final List<Site> sites = new ArrayList<>();
+
+        /** Table of shared subexpressions */
+        private final List<Shared> shared = new ArrayList<>();
+
+        /** Depth of the value stack after the instructions emitted so far */
+        private int depth;
+
+        /** Maximum depth of the value stack */
+        private int maxDepth;
+
+        /**
+         * Recursively emit the instructions of a node after the instructions of its children.
+         *
+         * @param node Current node of the expression tree
+         */
+        private void emit(ExpressionNode node) {
+            if (node.getShared() == ExpressionNode.NOT_SHARED) {
+                emitNode(node);
+                return;
+            }
+
+            // the instructions of a shared node are jumped over, and executed on request
+            int jump = append(JUMP, 0, 0);
+
+            int start = length;
+            emitNode(node);
+            code[jump] = encode(JUMP, length);
+
+            shared.add(new Shared(node.getShared(), new Range(start, length)));
+            append(SHARED, shared.size() - 1, 0);
+        }
+
+        /**
+         * Emit the instructions of a node after the instructions of its children, without sharing its value.
+         *
+         * @param node Current node of the expression tree
+         */
+        private void emitNode(ExpressionNode node) {
+            // encountered variable
+            if (node.token instanceof Variable) {
+                Variable variable = (Variable) node.token;
+
+                if (variable.slot == Variable.UNRESOLVED) {
+                    labels.add(variable.label);
+                    append(LOAD_LABEL, labels.size() - 1, 1);
+                }
+                else {
+                    append(LOAD_SLOT, variable.slot, 1);
+                }
+            }
+
+            // encountered function or operator
+            else if (node.token instanceof Function || node.token instanceof Operator) {
+                Operation<?> operation;
+                int operandCount;
+
+                if (node.token instanceof Function) {
+                    Function<?> function = (Function<?>) node.token;
+                    operation = function.operation;
+                    operandCount = function.parameters;
+                }
+                else {
+                    Operator<?> operator = (Operator<?>) node.token;
+                    operation = operator.operation;
+                    operandCount = (operator.type == OperatorType.INFIX || operator.type == OperatorType.INFIX_RTL) ? 2 : 1;
+                }
+
+                if (node.children.size() != operandCount) {
+                    throw new Expr4jException("Invalid expression");
+                }
+
+                // the operands of an eager operation are evaluated in line
+                if (operation instanceof EagerOperation || node.children.isEmpty()) {
+                    for (ExpressionNode child : node.children) {
+                        emit(child);
+                    }
+
+                    sites.add(new Site(operation, operandCount, Collections.emptyList()));
+                    append(APPLY, sites.size() - 1, 1 - operandCount);
+                }
+
+                // the operands of any other operation are jumped over, and each is executed on request
+                else {
+                    int jump = append(JUMP, 0, 0);
+
+                    List<Range> ranges = new ArrayList<>(operandCount);
+                    for (ExpressionNode child : node.children) {
+                        int start = length;
+                        emit(child);
+                        ranges.add(new Range(start, length));
+                    }
+
+                    code[jump] = encode(JUMP, length);
+
+                    sites.add(new Site(operation, operandCount, Collections.unmodifiableList(ranges)));
+                    append(CALL, sites.size() - 1, 1 - operandCount);
+                }
+            }
+
+            // encountered operand
+            else {
+                values.add(((Operand<?>) node.token).value);
+                append(LOAD_VALUE, values.size() - 1, 1);
+            }
+        }
+
+        /**
+         * Append an instruction.
+         *
+         * @param opcode The opcode
+         * @param index Index into the table of the opcode, or the address to jump to
+         * @param effect Change in the depth of the value stack
+         * @return Address of the instruction
+         */
+        private int append(int opcode, int index, int effect) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length] = encode(opcode, index);
+
+            depth += effect;
+            maxDepth = Math.max(maxDepth, depth);
+
+            return length++;
+        }
+
+        /**
+         * Encode an instruction.
+         *
+         * @param opcode The opcode
+         * @param index Index into the table of the opcode, or the address to jump to
+         * @return The instruction
+         */
+        private static int encode(int opcode, int index) {
+            if (index >= 1 << (Integer.SIZE - OPCODE_BITS)) {
+                throw new Expr4jException("Expression too large");
+            }
+            return (index << OPCODE_BITS) | opcode;
+        }
+
+    }
+
+    /**
+     * The <code>Site</code> class holds an operation called by the program, with the ranges of its lazy operands.
+     */
+    private static final class Site {
+
+        /** The operation */
+        private final Operation<?> operation;
+
+        /** Number of operands */
+        private final int operandCount;
+
+        /** Ranges of instructions of the lazy operands, empty if the operands are evaluated in line */
+        private final List<Range> ranges;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param operation The operation
+         * @param operandCount Number of operands
+         * @param ranges Ranges of instructions of the lazy operands
+         */
+        private Site(Operation<?> operation, int operandCount, List<Range> ranges) {
+            this.operation = operation;
+            this.operandCount = operandCount;
+            this.ranges = ranges;
+        }
+
+    }
+
+    /**
+     * The <code>Shared</code> class holds a shared subexpression, with the range of its instructions.
+     */
+    private static final class Shared {
+
+        /** Index of the shared subexpression */
+        private final int index;
+
+        /** Range of instructions of the subexpression */
+        private final Range range;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param index Index of the shared subexpression
+         * @param range Range of instructions of the subexpression
+         */
+        private Shared(int index, Range range) {
+            this.index = index;
+            this.range = range;
+        }
+
+    }
+
+    /**
+     * The <code>Range</code> class is the range of instructions of a lazy operand or shared subexpression,
+     * which is the target of its parameter.
+     */
+    private static final class Range {
+
+        /** Address of the first instruction */
+        private final int start;
+
+        /** Address after the last instruction */
+        private final int end;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param start Address of the first instruction
+         * @param end Address after the last instruction
+         */
+        private Range(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+    }
+
+    /**
+     * The <code>Program&lt;T&gt;</code> class executes the flat program of an expression.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class Program<T> implements CompiledExpression<T>, ParameterEvaluator<T> {
+
+        /** The instructions */
+        private final int[] code;
+
+        /** Table of values */
+        private final Object[] values;
+
+        /** Table of labels */
+        private final String[] labels;
+
+        /** Table of call sites */
+        private final Site[] sites;
+
+        /** Table of shared subexpressions */
+        private final Shared[] shared;
+
+        /** Maximum depth of the value stack */
+        private final int maxDepth;
+
+        /** Evaluator of the parameters of eager operations, whose targets are their values */
+        private final ParameterEvaluator<T> evaluated = new Evaluated<>();
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param code The instructions
+         * @param values Table of values
+         * @param labels Table of labels
+         * @param sites Table of call sites
+         * @param shared Table of shared subexpressions
+         * @param maxDepth Maximum depth of the value stack
+         */
+        private Program(int[] code, Object[] values, String[] labels, Site[] sites, Shared[] shared, int maxDepth) {
+            this.code = code;
+            this.values = values;
+            this.labels = labels;
+            this.sites = sites;
+            this.shared = shared;
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        public T evaluate(Bindings<T> bindings, EvaluationContext context) {
+            return execute(0, code.length, bindings, context);
+        }
+
+        @Override
+        public T evaluate(Object target, Bindings<T> bindings, EvaluationContext context) {
+            Range range = (Range) target;
+            return execute(range.start, range.end, bindings, context);
+        }
+
+        /**
+         * Execute a range of instructions, which leaves a single value on the value stack.
+         *
+         * @param start Address of the first instruction
+         * @param end Address after the last instruction
+         * @param bindings Bindings of variables
+         * @param context Context used to recycle the parameters of operations
+         * @return Result of the instructions
+         */
+        @SuppressWarnings("unchecked")
+        private T execute(int start, int end, Bindings<T> bindings, EvaluationContext context) {
+            Machine machine = MACHINE.get();
+
+            int base = machine.top;
+            int top = base;
+            Object[] stack = machine.reserve(maxDepth);
+
+            try {
+                int address = start;
+                while (address < end) {
+                    int instruction = code[address++];
+                    int index = instruction >>> OPCODE_BITS;
+
+                    switch (instruction & OPCODE_MASK) {
+                        case LOAD_VALUE:
+                            stack[top++] = values[index];
+                            break;
+
+                        case LOAD_SLOT:
+                            stack[top++] = bindings.get(index);
+                            break;
+
+                        case LOAD_LABEL:
+                            stack[top++] = bindings.get(labels[index]);
+                            break;
+
+                        case APPLY: {
+                            Site site = sites[index];
+                            Operation<T> operation = (Operation<T>) site.operation;
+
+                            // operations may evaluate other programs, which use the stack above the operands
+                            machine.top = top;
+                            Object result = context.execute(operation, evaluated, machine.window(top - site.operandCount, site.operandCount), bindings);
+                            stack = machine.stack;
+
+                            top -= site.operandCount;
+                            stack[top++] = result;
+                            break;
+                        }
+
+                        case CALL: {
+                            Site site = sites[index];
+                            Operation<T> operation = (Operation<T>) site.operation;
+
+                            machine.top = top;
+                            Object result = context.execute(operation, this, site.ranges, bindings);
+                            stack = machine.stack;
+
+                            stack[top++] = result;
+                            break;
+                        }
+
+                        case JUMP:
+                            address = index;
+                            break;
+
+                        case SHARED: {
+                            machine.top = top;
+                            Object result = bindings.evaluateShared(shared[index].index, this, shared[index].range, context);
+                            stack = machine.stack;
+
+                            stack[top++] = result;
+                            break;
+                        }
+
+                        default:
+                            throw new Expr4jException("Invalid instruction: " + instruction);
+                    }
+                }
+
+                return (T) stack[base];
+            }
+            finally {
+                Arrays.fill(machine.stack, base, top, null);
+                machine.top = base;
+            }
+        }
+
+    }
+
+    /**
+     * The <code>Evaluated&lt;T&gt;</code> class evaluates parameters whose targets are their values.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class Evaluated<T> implements ParameterEvaluator<T> {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T evaluate(Object target, Bindings<T> bindings, EvaluationContext context) {
+            return (T) target;
+        }
+
+    }
+
+    /**
+     * The <code>Machine</code> class holds the value stack of a thread.<br>
+     * Programs executed while another program is running, such as the operands of lazy operations,
+     * use the stack above the values of the running program.
+     */
+    private static final class Machine {
+
+        /** The value stack */
+        private Object[] stack = new Object[64];
+
+        /** Number of values in use */
+        private int top;
+
+        /** List view over the operands of an eager operation */
+        private final Window window = new Window();
+
+        /**
+         * Reserve room for values above the values in use.
+         *
+         * @param count Number of values
+         * @return The value stack
+         */
+        private Object[] reserve(int count) {
+            if (top + count > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + count));
+            }
+            return stack;
+        }
+
+        /**
+         * Get a list view over a range of the value stack.<br>
+         * The view is reused, so it is only valid until the next call.
+         *
+         * @param offset Index of the first value
+         * @param size Number of values
+         * @return The list view
+         */
+        private List<Object> window(int offset, int size) {
+            window.stack = stack;
+            window.offset = offset;
+            window.size = size;
+            return window;
+        }
+
+    }
+
+    /**
+     * The <code>Window</code> class is a list view over a range of the value stack.
+     */
+    private static final class Window extends AbstractList<Object> implements RandomAccess {
+
+        /** The value stack */
+        private Object[] stack;
+
+        /** Index of the first value */
+        private int offset;
+
+        /** Number of values */
+        private int size;
+
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return stack[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+    }
+
+}
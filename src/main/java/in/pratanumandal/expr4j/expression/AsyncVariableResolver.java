@@ -0,0 +1,50 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The <code>AsyncVariableResolver&lt;T&gt;</code> interface fetches the values of variables asynchronously,
+ * for example from a remote store.<br><br>
+ *
+ * It is used by {@link Expression#evaluateAsync(Bindings, AsyncVariableResolver, java.util.concurrent.Executor, boolean)}
+ * to fetch the variables that are not bound, only when evaluation reaches them.
+ * Variables requested while a fetch is in flight are fetched together in the next batch,
+ * and each variable is fetched at most once per evaluation.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+@FunctionalInterface
+public interface AsyncVariableResolver<T> {
+
+    /**
+     * Fetch the values of a batch of variables.<br>
+     * Labels missing from the returned map are reported as variables not found.
+     *
+     * @param labels The labels of the variables
+     * @return Future holding the map of labels to values
+     */
+    CompletableFuture<Map<String, T>> resolve(Set<String> labels);
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+/**
+ * The <code>BatchError</code> class records the failure to evaluate an expression for one row of a batch.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public final class BatchError {
+
+    /** Index of the expression */
+    private final int expression;
+
+    /** Index of the row */
+    private final int row;
+
+    /** The exception thrown */
+    private final RuntimeException exception;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param expression Index of the expression
+     * @param row Index of the row
+     * @param exception The exception thrown
+     */
+    public BatchError(int expression, int row, RuntimeException exception) {
+        this.expression = expression;
+        this.row = row;
+        this.exception = exception;
+    }
+
+    /**
+     * Get the index of the expression that failed.
+     *
+     * @return The index of the expression
+     */
+    public int getExpression() {
+        return expression;
+    }
+
+    /**
+     * Get the index of the row that failed.
+     *
+     * @return The index of the row
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Get the exception thrown.
+     *
+     * @return The exception
+     */
+    public RuntimeException getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchError{expression=" + expression + ", row=" + row + ", exception=" + exception + "}";
+    }
+
+}
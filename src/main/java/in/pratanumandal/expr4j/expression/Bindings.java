@@ -0,0 +1,434 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The <code>Bindings&lt;T&gt;</code> class holds the values of the variables of an expression.<br>
+ * Each distinct variable of an expression is assigned a slot when the expression is built.
+ * The bindings store the value of every variable at its slot, so evaluation does not need any lookup by label.<br><br>
+ *
+ * Variables that are not bound can be resolved on demand by a {@link VariableResolver}.<br><br>
+ *
+ * A bindings object can be reused across evaluations of the expression it was created for.
+ * It also holds the values of subexpressions shared within the expression, which are computed at most once per evaluation.
+ * It is not thread safe.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+public class Bindings<T> {
+
+    /**
+     * Marker for slots which do not have a value.
+     */
+    private static final Object UNBOUND = new Object();
+
+    /**
+     * Labels of the variables in the order of their slots.
+     */
+    final List<String> variables;
+
+    /**
+     * Map of variable labels to slots.
+     */
+    private final Map<String, Integer> slots;
+
+    /**
+     * Values of the variables in the order of their slots.
+     */
+    private final Object[] values;
+
+    /**
+     * Values of the shared subexpressions.
+     */
+    private final Object[] memo;
+
+    /**
+     * Generation in which each value of a shared subexpression was computed.
+     */
+    private final long[] memoGenerations;
+
+    /**
+     * Current generation of the values of shared subexpressions.<br>
+     * Incrementing the generation discards all of them at once.
+     */
+    private long generation;
+
+    /**
+     * Resolver of the variables that are not bound, if any.
+     */
+    VariableResolver<T> resolver;
+
+    /**
+     * Values of the variables resolved by the resolver.
+     */
+    private final Object[] resolved;
+
+    /**
+     * Generation in which each value of a resolved variable was resolved.
+     */
+    private final long[] resolvedGenerations;
+
+    /**
+     * Live view of the values of the variables, created when first needed.
+     */
+    private ValueList valueList;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param variables Labels of the variables in the order of their slots
+     * @param slots Map of variable labels to slots
+     */
+    Bindings(List<String> variables, Map<String, Integer> slots) {
+        this(variables, slots, 0);
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param variables Labels of the variables in the order of their slots
+     * @param slots Map of variable labels to slots
+     * @param sharedCount Number of shared subexpressions
+     */
+    Bindings(List<String> variables, Map<String, Integer> slots, int sharedCount) {
+        this.variables = variables;
+        this.slots = slots;
+        this.values = new Object[variables.size()];
+        Arrays.fill(this.values, UNBOUND);
+        this.memo = new Object[sharedCount];
+        this.memoGenerations = new long[sharedCount];
+        this.resolved = new Object[variables.size()];
+        this.resolvedGenerations = new long[variables.size()];
+        this.generation = 1;
+    }
+
+    /**
+     * Copy the values of the variables into new bindings, which hold their own values of shared subexpressions.
+     *
+     * @return The copy
+     */
+    Bindings<T> copy() {
+        Bindings<T> copy = new Bindings<>(variables, slots, memo.length);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        copy.resolver = resolver;
+        return copy;
+    }
+
+    /**
+     * Discard the values of all shared subexpressions and resolved variables.
+     */
+    void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Check if the value of a shared subexpression has been computed.
+     *
+     * @param index The index of the shared subexpression
+     * @return True if computed, false otherwise
+     */
+    boolean isMemoized(int index) {
+        return memoGenerations[index] == generation;
+    }
+
+    /**
+     * Get the computed value of a shared subexpression.
+     *
+     * @param index The index of the shared subexpression
+     * @return The value
+     */
+    @SuppressWarnings("unchecked")
+    T getMemoized(int index) {
+        return (T) memo[index];
+    }
+
+    /**
+     * Store the computed value of a shared subexpression.
+     *
+     * @param index The index of the shared subexpression
+     * @param value The value
+     */
+    void memoize(int index, T value) {
+        memo[index] = value;
+        memoGenerations[index] = generation;
+    }
+
+    /**
+     * Get the value of a shared subexpression, evaluating and storing it if it has not been computed yet.<br>
+     * Compiled expressions call this for every node whose {@link ExpressionNode#getShared()} index is set,
+     * so that each shared subexpression is evaluated at most once per evaluation, as it is by the tree evaluator.
+     *
+     * @param index The index of the shared subexpression
+     * @param evaluator Evaluator of the subexpression
+     * @param target The target of the evaluator
+     * @param context Context used to recycle the parameters of operations
+     * @return The value
+     */
+    public T evaluateShared(int index, ParameterEvaluator<T> evaluator, Object target, EvaluationContext context) {
+        if (isMemoized(index)) {
+            return getMemoized(index);
+        }
+
+        T value = evaluator.evaluate(target, this, context);
+        memoize(index, value);
+        return value;
+    }
+
+    /**
+     * Get the number of slots.
+     *
+     * @return The number of slots
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Get the slot of a variable.
+     *
+     * @param label The label of the variable
+     * @return The slot if found, -1 otherwise
+     */
+    public int getSlot(String label) {
+        Integer slot = slots.get(label);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Set the value of the variable at a slot.
+     *
+     * @param slot The slot
+     * @param value The value
+     * @return These bindings
+     */
+    public Bindings<T> set(int slot, T value) {
+        values[slot] = value;
+        generation++;
+        return this;
+    }
+
+    /**
+     * Set the value of a variable.<br>
+     * Labels of variables that are not present in the expression are ignored.
+     *
+     * @param label The label of the variable
+     * @param value The value
+     * @return These bindings
+     */
+    public Bindings<T> set(String label, T value) {
+        Integer slot = slots.get(label);
+        if (slot != null) set(slot, value);
+        return this;
+    }
+
+    /**
+     * Set the values of the variables present in a map.<br>
+     * Labels of variables that are not present in the expression are ignored.
+     *
+     * @param variables Map of variables
+     * @return These bindings
+     */
+    public Bindings<T> setAll(Map<String, T> variables) {
+        for (int slot = 0; slot < values.length; slot++) {
+            String label = this.variables.get(slot);
+            T value = variables.get(label);
+            if (value != null || variables.containsKey(label)) {
+                values[slot] = value;
+            }
+        }
+        generation++;
+        return this;
+    }
+
+    /**
+     * Get the value of the variable at a slot.
+     *
+     * @param slot The slot
+     * @return The value
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int slot) {
+        Object value = values[slot];
+        if (value == UNBOUND) {
+            if (resolver != null) {
+                return resolve(slot);
+            }
+            throw new Expr4jException("Variable not found: " + variables.get(slot));
+        }
+        return (T) value;
+    }
+
+    /**
+     * Resolve the value of the variable at a slot, at most once per evaluation.
+     *
+     * @param slot The slot
+     * @return The value
+     */
+    @SuppressWarnings("unchecked")
+    private T resolve(int slot) {
+        if (resolvedGenerations[slot] == generation) {
+            return (T) resolved[slot];
+        }
+
+        T value = resolver.resolve(slot, variables.get(slot));
+        resolved[slot] = value;
+        resolvedGenerations[slot] = generation;
+        return value;
+    }
+
+    /**
+     * Set the resolver of the variables that are not bound.<br>
+     * The resolver is asked for the value of such a variable only when evaluation reaches it, and at most once per evaluation.
+     *
+     * @param resolver The resolver, or null to report variables that are not bound as not found
+     * @return These bindings
+     */
+    public Bindings<T> setResolver(VariableResolver<T> resolver) {
+        this.resolver = resolver;
+        generation++;
+        return this;
+    }
+
+    /**
+     * Get the resolver of the variables that are not bound.
+     *
+     * @return The resolver, or null if not set
+     */
+    public VariableResolver<T> getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Get the value of a variable.
+     *
+     * @param label The label of the variable
+     * @return The value
+     */
+    public T get(String label) {
+        Integer slot = slots.get(label);
+        if (slot == null) {
+            throw new Expr4jException("Variable not found: " + label);
+        }
+        return get(slot);
+    }
+
+    /**
+     * Check if the variable at a slot has a value.
+     *
+     * @param slot The slot
+     * @return True if the variable has a value, false otherwise
+     */
+    public boolean isBound(int slot) {
+        return values[slot] != UNBOUND;
+    }
+
+    /**
+     * Remove the value of the variable at a slot.
+     *
+     * @param slot The slot
+     * @return These bindings
+     */
+    public Bindings<T> unset(int slot) {
+        values[slot] = UNBOUND;
+        generation++;
+        return this;
+    }
+
+    /**
+     * Get a live view of the values of the variables in the order of their slots, which must all be bound.<br>
+     * The view is reused, so it can be used to look up a cache without copying the values, but must be copied to be kept.
+     *
+     * @return The view
+     */
+    List<T> values() {
+        if (valueList == null) {
+            valueList = new ValueList();
+        }
+        return valueList;
+    }
+
+    /**
+     * Remove the values of all variables.
+     *
+     * @return These bindings
+     */
+    public Bindings<T> clear() {
+        Arrays.fill(values, UNBOUND);
+        generation++;
+        return this;
+    }
+
+    /**
+     * The <code>ValueList</code> class is a list view over the values of the variables.<br>
+     * It hashes and compares its elements by index, so looking it up does not allocate an iterator.
+     */
+    private final class ValueList extends AbstractList<T> implements RandomAccess {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public int hashCode() {
+            int hashCode = 1;
+            for (Object value : values) {
+                hashCode = 31 * hashCode + Objects.hashCode(value);
+            }
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (!(object instanceof List) || !(object instanceof RandomAccess) || ((List<?>) object).size() != values.length) {
+                return super.equals(object);
+            }
+
+            List<?> other = (List<?>) object;
+            for (int i = 0; i < values.length; i++) {
+                if (!Objects.equals(values[i], other.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
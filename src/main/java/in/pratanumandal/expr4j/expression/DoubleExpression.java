@@ -0,0 +1,843 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operand;
+import in.pratanumandal.expr4j.token.Operation;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import in.pratanumandal.expr4j.token.Variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The <code>DoubleExpression</code> class evaluates an expression over doubles without boxing.<br>
+ * It is created from an expression built by an {@link ExpressionBuilder}, so it shares the dictionary and syntax of all other expressions.
+ * Variables are read from a <code>double[]</code> laid out in the slot order of the expression.<br><br>
+ *
+ * Operations implementing {@link DoubleUnaryOperation}, {@link DoubleBinaryOperation} or {@link DoubleNaryOperation} are called with primitive operands,
+ * which are evaluated before the operation is applied.
+ * Any other operation is called through its {@link Operation} interface with lazy, boxed parameters.<br><br>
+ *
+ * Batch evaluation evaluates the expression over columns of variables, one node at a time over chunks of {@link #BATCH_SIZE} rows,
+ * using the vector forms of the primitive operations.
+ * Subtrees rooted at any other operation are evaluated one row at a time.<br><br>
+ *
+ * Shared subexpressions are evaluated at most once per evaluation, or once per chunk of rows by batch evaluation,
+ * as they are by the tree evaluator of the expression.<br><br>
+ *
+ * Expression trees taller than {@link Expression#ITERATIVE_DEPTH} are not compiled,
+ * and are evaluated one row at a time by the tree evaluator of the expression, which evaluates trees of any depth in bounded stack.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public class DoubleExpression {
+
+    /**
+     * Number of rows evaluated together by batch evaluation.
+     */
+    public static final int BATCH_SIZE = 1024;
+
+    /**
+     * The expression.
+     */
+    private final Expression<Double> expression;
+
+    /**
+     * Root of the compiled expression.
+     */
+    private final DoubleNode root;
+
+    /**
+     * Number of shared subexpressions of the compiled expression.
+     */
+    private final int sharedCount;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param expression The expression
+     */
+    public DoubleExpression(Expression<Double> expression) {
+        if (expression.root == null) {
+            throw new Expr4jException("Invalid expression");
+        }
+        this.expression = expression;
+
+        if (ExpressionNode.height(expression.root) > Expression.ITERATIVE_DEPTH) {
+            ExpressionNode.postorder(expression.root, (node, parent, index) -> {
+                if (node.token instanceof Variable && ((Variable) node.token).slot == Variable.UNRESOLVED) {
+                    throw new Expr4jException("Variable not found: " + ((Variable) node.token).label);
+                }
+                if (node.token instanceof Operand && ((Operand<?>) node.token).value == null) {
+                    throw new Expr4jException("Operand cannot be null");
+                }
+            });
+            this.root = new Tree(expression);
+            this.sharedCount = 0;
+        }
+        else {
+            this.sharedCount = expression.getSharedCount();
+            this.root = compile(expression.root, sharedCount);
+        }
+    }
+
+    /**
+     * Recursively compile the expression tree.
+     *
+     * @param node Current node of the expression tree
+     * @param sharedCount Number of shared subexpressions
+     * @return The compiled node
+     */
+    private static DoubleNode compile(ExpressionNode node, int sharedCount) {
+        DoubleNode compiled = compileNode(node, sharedCount);
+        if (node.shared != ExpressionNode.NOT_SHARED) {
+            return new Shared(node.shared, sharedCount, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Compile a node of the expression tree, without sharing its value.
+     *
+     * @param node Current node of the expression tree
+     * @param sharedCount Number of shared subexpressions
+     * @return The compiled node
+     */
+    @SuppressWarnings("unchecked")
+    private static DoubleNode compileNode(ExpressionNode node, int sharedCount) {
+        // encountered variable
+        if (node.token instanceof Variable) {
+            Variable variable = (Variable) node.token;
+
+            if (variable.slot == Variable.UNRESOLVED) {
+                throw new Expr4jException("Variable not found: " + variable.label);
+            }
+
+            return new Slot(variable.slot);
+        }
+
+        // encountered function or operator
+        else if (node.token instanceof Function || node.token instanceof Operator) {
+            Operation<Double> operation;
+            int operandCount;
+
+            if (node.token instanceof Function) {
+                Function<Double> function = (Function<Double>) node.token;
+                operation = function.operation;
+                operandCount = function.parameters;
+            }
+            else {
+                Operator<Double> operator = (Operator<Double>) node.token;
+                operation = operator.operation;
+                operandCount = (operator.type == OperatorType.INFIX || operator.type == OperatorType.INFIX_RTL) ? 2 : 1;
+            }
+
+            if (node.children.size() != operandCount) {
+                throw new Expr4jException("Invalid expression");
+            }
+
+            DoubleNode[] children = new DoubleNode[operandCount];
+            for (int i = 0; i < operandCount; i++) {
+                children[i] = compile(node.children.get(i), sharedCount);
+            }
+
+            if (operation instanceof DoubleUnaryOperation && operandCount == 1) {
+                return new Unary((DoubleUnaryOperation) operation, children[0]);
+            }
+            else if (operation instanceof DoubleBinaryOperation && operandCount == 2) {
+                return new Binary((DoubleBinaryOperation) operation, children[0], children[1]);
+            }
+            else if (operation instanceof DoubleNaryOperation) {
+                return new Nary((DoubleNaryOperation) operation, children);
+            }
+            else {
+                return new Boxed(operation, children);
+            }
+        }
+
+        // encountered operand
+        else {
+            Double value = ((Operand<Double>) node.token).value;
+            if (value == null) {
+                throw new Expr4jException("Operand cannot be null");
+            }
+            return new Value(value);
+        }
+    }
+
+    /**
+     * Get the expression.
+     *
+     * @return The expression
+     */
+    public Expression<Double> getExpression() {
+        return expression;
+    }
+
+    /**
+     * Get the labels of the variables in the order of their slots.
+     *
+     * @return The slot layout of this expression
+     */
+    public List<String> getVariables() {
+        return expression.getVariables();
+    }
+
+    /**
+     * Get the slot of a variable.
+     *
+     * @param label The label of the variable
+     * @return The slot if found, -1 otherwise
+     */
+    public int getSlot(String label) {
+        return expression.getSlot(label);
+    }
+
+    /**
+     * Evaluate the expression.
+     *
+     * @param slots Values of the variables in the order of their slots
+     * @param context Context used to recycle the operands of operations
+     * @return Evaluated result
+     */
+    public double evaluateAsDouble(double[] slots, EvaluationContext context) {
+        if (slots.length < expression.getVariables().size()) {
+            throw new Expr4jException("Expected " + expression.getVariables().size() + " slots, found " + slots.length);
+        }
+        if (sharedCount == 0) {
+            return root.evaluate(slots, context);
+        }
+
+        double[] previous = context.memo;
+        double[] memo = context.pushDoubles(2 * sharedCount);
+        Arrays.fill(memo, sharedCount, 2 * sharedCount, 0);
+        context.memo = memo;
+        try {
+            return root.evaluate(slots, context);
+        }
+        finally {
+            context.memo = previous;
+            context.popDoubles();
+        }
+    }
+
+    /**
+     * Evaluate the expression using the context of the current thread.
+     *
+     * @param slots Values of the variables in the order of their slots
+     * @return Evaluated result
+     */
+    public double evaluateAsDouble(double... slots) {
+        return evaluateAsDouble(slots, EvaluationContext.current());
+    }
+
+    /**
+     * Evaluate the expression over a range of rows of columns of variables.<br>
+     * Each column holds the values of one variable, in the slot order of the expression.
+     *
+     * @param columns Values of the variables, one column per slot
+     * @param results Array to store the result of each row, at the index of the row
+     * @param from Index of the first row, inclusive
+     * @param to Index of the last row, exclusive
+     */
+    public void evaluateBatch(double[][] columns, double[] results, int from, int to) {
+        int slotCount = expression.getVariables().size();
+        if (columns.length < slotCount) {
+            throw new Expr4jException("Expected " + slotCount + " columns, found " + columns.length);
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (columns[slot].length < to) {
+                throw new Expr4jException("Column of variable " + expression.getVariables().get(slot) + " has fewer than " + to + " rows");
+            }
+        }
+        if (from < 0 || from > to || results.length < to) {
+            throw new Expr4jException("Invalid range of rows: " + from + " to " + to);
+        }
+
+        Batch batch = new Batch(slotCount, sharedCount);
+        double[] chunk = batch.acquire();
+
+        for (int row = from; row < to; row += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, to - row);
+            Arrays.fill(batch.computed, false);
+            root.evaluate(columns, row, count, chunk, batch);
+            System.arraycopy(chunk, 0, results, row, count);
+        }
+    }
+
+    /**
+     * Evaluate the expression over all rows of columns of variables.<br>
+     * Each column holds the values of one variable, in the slot order of the expression.
+     *
+     * @param columns Values of the variables, one column per slot
+     * @param results Array to store the result of each row, whose length is the number of rows
+     */
+    public void evaluateBatch(double[][] columns, double[] results) {
+        evaluateBatch(columns, results, 0, results.length);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    /**
+     * The <code>DoubleNode</code> class represents a compiled node of the expression tree.
+     */
+    private static abstract class DoubleNode {
+
+        /**
+         * Evaluate the node.
+         *
+         * @param slots Values of the variables
+         * @param context Context used to recycle the operands of operations
+         * @return Evaluated result
+         */
+        abstract double evaluate(double[] slots, EvaluationContext context);
+
+        /**
+         * Evaluate the node over a chunk of rows.
+         *
+         * @param columns Values of the variables, one column per slot
+         * @param row Index of the first row
+         * @param count Number of rows, at most {@link #BATCH_SIZE}
+         * @param results Array to store the result of each row, starting at index 0
+         * @param batch Scratch state of the batch
+         */
+        abstract void evaluate(double[][] columns, int row, int count, double[] results, Batch batch);
+
+    }
+
+    /**
+     * The <code>Batch</code> class holds the scratch state of a batch evaluation.<br>
+     * Vectors are acquired and released in last-in first-out order, so a batch needs one vector per level of the expression tree.
+     */
+    private static final class Batch {
+
+        /** Stack of vectors */
+        private double[][] vectors = new double[8][];
+
+        /** Number of vectors in use */
+        private int top;
+
+        /** Stack of arrays holding the vectors of operands of n-ary operations */
+        private double[][][] operands = new double[8][][];
+
+        /** Number of operand arrays in use */
+        private int operandDepth;
+
+        /** Values of the variables of a single row */
+        private final double[] slots;
+
+        /** Context used to evaluate rows */
+        private final EvaluationContext context = new EvaluationContext();
+
+        /** Values of the shared subexpressions over the current chunk */
+        private final double[][] shared;
+
+        /** Flags marking the shared subexpressions computed over the current chunk */
+        private final boolean[] computed;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param slotCount Number of slots
+         * @param sharedCount Number of shared subexpressions
+         */
+        private Batch(int slotCount, int sharedCount) {
+            this.slots = new double[slotCount];
+            this.shared = new double[sharedCount][];
+            this.computed = new boolean[sharedCount];
+        }
+
+        /**
+         * Acquire a vector of {@link #BATCH_SIZE} elements.
+         *
+         * @return The vector
+         */
+        private double[] acquire() {
+            if (top == vectors.length) {
+                vectors = Arrays.copyOf(vectors, top * 2);
+            }
+            if (vectors[top] == null) {
+                vectors[top] = new double[BATCH_SIZE];
+            }
+            return vectors[top++];
+        }
+
+        /**
+         * Release the specified number of vectors acquired last.
+         *
+         * @param count Number of vectors
+         */
+        private void release(int count) {
+            top -= count;
+        }
+
+        /**
+         * Push an array to hold the vectors of operands of an n-ary operation.<br>
+         * Every call must be followed by a call to {@link #popOperands()} once the operation returns.
+         *
+         * @param count Number of operands
+         * @return An array of at least the specified length
+         */
+        private double[][] pushOperands(int count) {
+            if (operandDepth == operands.length) {
+                operands = Arrays.copyOf(operands, operandDepth * 2);
+            }
+            double[][] vectors = operands[operandDepth];
+            if (vectors == null || vectors.length < count) {
+                vectors = new double[Math.max(count, 8)][];
+                operands[operandDepth] = vectors;
+            }
+            operandDepth++;
+            return vectors;
+        }
+
+        /**
+         * Pop the array pushed by the last call to {@link #pushOperands(int)}.
+         */
+        private void popOperands() {
+            operandDepth--;
+        }
+
+    }
+
+    /**
+     * The <code>Shared</code> class evaluates a shared subexpression at most once per evaluation.<br>
+     * Rows evaluated one at a time by batch evaluation do not share the values of their subexpressions.
+     */
+    private static final class Shared extends DoubleNode {
+
+        /** Index of the shared subexpression */
+        private final int index;
+
+        /** Number of shared subexpressions, which is the offset of the computed flags in the memo */
+        private final int count;
+
+        /** The subexpression */
+        private final DoubleNode node;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param index Index of the shared subexpression
+         * @param count Number of shared subexpressions
+         * @param node The subexpression
+         */
+        private Shared(int index, int count, DoubleNode node) {
+            this.index = index;
+            this.count = count;
+            this.node = node;
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            double[] memo = context.memo;
+            if (memo == null) {
+                return node.evaluate(slots, context);
+            }
+
+            if (memo[count + index] != 0) {
+                return memo[index];
+            }
+
+            double value = node.evaluate(slots, context);
+            memo[index] = value;
+            memo[count + index] = 1;
+            return value;
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            if (batch.computed[index]) {
+                System.arraycopy(batch.shared[index], 0, results, 0, count);
+                return;
+            }
+
+            node.evaluate(columns, row, count, results, batch);
+
+            if (batch.shared[index] == null) {
+                batch.shared[index] = new double[BATCH_SIZE];
+            }
+            System.arraycopy(results, 0, batch.shared[index], 0, count);
+            batch.computed[index] = true;
+        }
+
+    }
+
+    /**
+     * The <code>Value</code> class returns the value of an operand or constant.
+     */
+    private static final class Value extends DoubleNode {
+
+        /** The value */
+        private final double value;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param value The value
+         */
+        private Value(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            return value;
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            Arrays.fill(results, 0, count, value);
+        }
+
+    }
+
+    /**
+     * The <code>Slot</code> class loads the value of a variable.
+     */
+    private static final class Slot extends DoubleNode {
+
+        /** Slot of the variable */
+        private final int slot;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param slot Slot of the variable
+         */
+        private Slot(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            return slots[slot];
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            System.arraycopy(columns[slot], row, results, 0, count);
+        }
+
+    }
+
+    /**
+     * The <code>Unary</code> class applies a primitive unary operation.
+     */
+    private static final class Unary extends DoubleNode {
+
+        /** The operation */
+        private final DoubleUnaryOperation operation;
+
+        /** The operand */
+        private final DoubleNode operand;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param operation The operation
+         * @param operand The operand
+         */
+        private Unary(DoubleUnaryOperation operation, DoubleNode operand) {
+            this.operation = operation;
+            this.operand = operand;
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            return operation.applyAsDouble(operand.evaluate(slots, context));
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            double[] operands = batch.acquire();
+            try {
+                operand.evaluate(columns, row, count, operands, batch);
+                operation.applyAsDouble(operands, results, count);
+            }
+            finally {
+                batch.release(1);
+            }
+        }
+
+    }
+
+    /**
+     * The <code>Binary</code> class applies a primitive binary operation.
+     */
+    private static final class Binary extends DoubleNode {
+
+        /** The operation */
+        private final DoubleBinaryOperation operation;
+
+        /** The left operand */
+        private final DoubleNode left;
+
+        /** The right operand */
+        private final DoubleNode right;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param operation The operation
+         * @param left The left operand
+         * @param right The right operand
+         */
+        private Binary(DoubleBinaryOperation operation, DoubleNode left, DoubleNode right) {
+            this.operation = operation;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            return operation.applyAsDouble(left.evaluate(slots, context), right.evaluate(slots, context));
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            double[] leftOperands = batch.acquire();
+            double[] rightOperands = batch.acquire();
+            try {
+                left.evaluate(columns, row, count, leftOperands, batch);
+                right.evaluate(columns, row, count, rightOperands, batch);
+                operation.applyAsDouble(leftOperands, rightOperands, results, count);
+            }
+            finally {
+                batch.release(2);
+            }
+        }
+
+    }
+
+    /**
+     * The <code>Nary</code> class applies a primitive operation on any number of operands.
+     */
+    private static final class Nary extends DoubleNode {
+
+        /** The operation */
+        private final DoubleNaryOperation operation;
+
+        /** The operands */
+        private final DoubleNode[] operands;
+
+        /** Flag to indicate if the operation overrides its vector form */
+        private final boolean vectorized;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param operation The operation
+         * @param operands The operands
+         */
+        private Nary(DoubleNaryOperation operation, DoubleNode[] operands) {
+            this.operation = operation;
+            this.operands = operands;
+            this.vectorized = isVectorized(operation);
+        }
+
+        /**
+         * Check if an operation overrides the default vector form of {@link DoubleNaryOperation}.
+         *
+         * @param operation The operation
+         * @return true if the vector form is overridden, otherwise false
+         */
+        private static boolean isVectorized(DoubleNaryOperation operation) {
+            try {
+                return !operation.getClass().getMethod("applyAsDouble", double[][].class, int.class, double[].class, int.class).isDefault();
+            }
+            catch (NoSuchMethodException | SecurityException e) {
+                return true;
+            }
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            double[] values = context.pushDoubles(operands.length);
+            try {
+                for (int i = 0; i < operands.length; i++) {
+                    values[i] = operands[i].evaluate(slots, context);
+                }
+                return operation.applyAsDouble(values, operands.length);
+            }
+            finally {
+                context.popDoubles();
+            }
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            double[][] vectors = batch.pushOperands(operands.length);
+            int acquired = 0;
+            try {
+                for (int i = 0; i < operands.length; i++) {
+                    vectors[i] = batch.acquire();
+                    acquired++;
+                    operands[i].evaluate(columns, row, count, vectors[i], batch);
+                }
+                if (vectorized) {
+                    operation.applyAsDouble(vectors, operands.length, results, count);
+                }
+                else {
+                    // gather the operands of one row at a time into an array recycled from the context
+                    double[] values = batch.context.pushDoubles(operands.length);
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            for (int j = 0; j < operands.length; j++) {
+                                values[j] = vectors[j][i];
+                            }
+                            results[i] = operation.applyAsDouble(values, operands.length);
+                        }
+                    }
+                    finally {
+                        batch.context.popDoubles();
+                    }
+                }
+            }
+            finally {
+                batch.release(acquired);
+                batch.popOperands();
+            }
+        }
+
+    }
+
+    /**
+     * The <code>Boxed</code> class calls an operation which has no primitive form, with lazy boxed parameters.
+     */
+    private static final class Boxed extends DoubleNode {
+
+        /** Evaluator of the parameters, whose targets are compiled nodes evaluated against the slots held by the context */
+        private static final ParameterEvaluator<Double> EVALUATOR = (target, bindings, context) ->
+                ((DoubleNode) target).evaluate(context.slots, context);
+
+        /** The operation */
+        private final Operation<Double> operation;
+
+        /** The operands */
+        private final List<DoubleNode> operands;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param operation The operation
+         * @param operands The operands
+         */
+        private Boxed(Operation<Double> operation, DoubleNode[] operands) {
+            this.operation = operation;
+            this.operands = new ArrayList<>(operands.length);
+            for (DoubleNode operand : operands) {
+                this.operands.add(operand);
+            }
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            double[] previous = context.slots;
+            context.slots = slots;
+
+            List<ExpressionParameter<Double>> parameters = context.push(EVALUATOR, operands, null);
+            try {
+                return operation.execute(parameters);
+            }
+            finally {
+                context.pop();
+                context.slots = previous;
+            }
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            // the operation may not need every operand, so evaluate one row at a time
+            double[] slots = batch.slots;
+            for (int i = 0; i < count; i++) {
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = columns[slot][row + i];
+                }
+                results[i] = evaluate(slots, batch.context);
+            }
+        }
+
+    }
+
+    /**
+     * The <code>Tree</code> class evaluates an expression tree which is too tall to compile, with the tree evaluator of the expression.
+     */
+    private static final class Tree extends DoubleNode {
+
+        /** The expression */
+        private final Expression<Double> expression;
+
+        /** Bindings reused by each thread, holding null while in use */
+        private final ThreadLocal<Bindings<Double>[]> spare;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param expression The expression
+         */
+        @SuppressWarnings("unchecked")
+        private Tree(Expression<Double> expression) {
+            this.expression = expression;
+            this.spare = ThreadLocal.withInitial(() -> new Bindings[] { expression.bindings() });
+        }
+
+        @Override
+        double evaluate(double[] slots, EvaluationContext context) {
+            // take the bindings of this thread, or create new ones if they are in use by an enclosing evaluation
+            Bindings<Double>[] spare = this.spare.get();
+            Bindings<Double> bindings = spare[0] != null ? spare[0] : expression.bindings();
+            spare[0] = null;
+            try {
+                for (int slot = 0; slot < bindings.size(); slot++) {
+                    bindings.set(slot, slots[slot]);
+                }
+                return expression.evaluate(bindings, context);
+            }
+            finally {
+                spare[0] = bindings;
+            }
+        }
+
+        @Override
+        void evaluate(double[][] columns, int row, int count, double[] results, Batch batch) {
+            double[] slots = batch.slots;
+            for (int i = 0; i < count; i++) {
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = columns[slot][row + i];
+                }
+                results[i] = evaluate(slots, batch.context);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.token.Operation;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The <code>EvaluationContext</code> class holds the scratch state used while evaluating expressions.<br>
+ * The parameters passed to operations and the lists holding them are recycled from the context,
+ * so evaluating an expression with a reused context does not allocate once the context has grown to fit the expression.<br><br>
+ *
+ * Parameters handed to an operation are only valid until the operation returns,
+ * and must be evaluated on the thread that evaluates the expression.
+ * A context can be reused across evaluations of any number of expressions, but it is not thread safe.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public final class EvaluationContext {
+
+    /**
+     * Context of the current thread.
+     */
+    private static final ThreadLocal<EvaluationContext> LOCAL = ThreadLocal.withInitial(EvaluationContext::new);
+
+    /**
+     * Stack of parameters.
+     */
+    private ExpressionParameter<?>[] parameters;
+
+    /**
+     * Number of parameters in use.
+     */
+    private int top;
+
+    /**
+     * Stack of parameter lists, one for each operation being evaluated.
+     */
+    private ParameterList<?>[] lists;
+
+    /**
+     * Number of parameter lists in use.
+     */
+    private int depth;
+
+    /**
+     * Stack of arrays holding the operands of primitive operations.
+     */
+    private double[][] doubles;
+
+    /**
+     * Number of operand arrays in use.
+     */
+    private int doubleDepth;
+
+    /**
+     * Values of the variables of the {@link DoubleExpression} whose boxed operation is being executed.
+     */
+    double[] slots;
+
+    /**
+     * Values of the shared subexpressions of the {@link DoubleExpression} being evaluated, followed by flags marking those computed.
+     */
+    double[] memo;
+
+    /**
+     * No-Argument Constructor.
+     */
+    public EvaluationContext() {
+        this.parameters = new ExpressionParameter<?>[16];
+        this.lists = new ParameterList<?>[8];
+        this.doubles = new double[8][];
+    }
+
+    /**
+     * Get the context of the current thread.
+     *
+     * @return The context
+     */
+    public static EvaluationContext current() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Get the number of operations currently being evaluated in this context.
+     *
+     * @return The depth of evaluation
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Execute an operation with parameters recycled from this context.<br>
+     * The parameters are valid only until the operation returns, and are recycled even if it throws.
+     *
+     * @param operation The operation
+     * @param evaluator Evaluator of the targets
+     * @param targets The targets of the parameters, such as the children of a node
+     * @param bindings Bindings of variables
+     * @param <T> The type of operand
+     * @return The result of the operation
+     */
+    public <T> T execute(Operation<T> operation, ParameterEvaluator<T> evaluator, List<?> targets, Bindings<T> bindings) {
+        List<ExpressionParameter<T>> parameters = push(evaluator, targets, bindings);
+        try {
+            return operation.execute(parameters);
+        }
+        finally {
+            pop();
+        }
+    }
+
+    /**
+     * Push the parameters of an operation.<br>
+     * This lets compiled code call each operation from its own call site.
+     * Every call must be followed by a call to {@link #pop(List)} with the returned list once the operation returns, even if it throws;
+     * otherwise, use {@link #execute(Operation, ParameterEvaluator, List, Bindings)}.
+     *
+     * @param evaluator Evaluator of the targets
+     * @param targets The targets of the parameters, such as the children of a node
+     * @param bindings Bindings of variables
+     * @param <T> The type of operand
+     * @return The list of parameters
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<ExpressionParameter<T>> push(ParameterEvaluator<T> evaluator, List<?> targets, Bindings<T> bindings) {
+        int count = targets.size();
+
+        if (top + count > parameters.length) {
+            parameters = Arrays.copyOf(parameters, Math.max(parameters.length * 2, top + count));
+        }
+        for (int i = 0; i < count; i++) {
+            ExpressionParameter<T> parameter = (ExpressionParameter<T>) parameters[top + i];
+            if (parameter == null) {
+                parameter = new ExpressionParameter<>((ParameterEvaluator<T>) null, null, null);
+                parameters[top + i] = parameter;
+            }
+            parameter.reset(evaluator, targets.get(i), bindings, this);
+        }
+
+        if (depth == lists.length) {
+            lists = Arrays.copyOf(lists, lists.length * 2);
+        }
+        ParameterList<T> list = (ParameterList<T>) lists[depth];
+        if (list == null) {
+            list = new ParameterList<>(this);
+            lists[depth] = list;
+        }
+        list.offset = top;
+        list.size = count;
+
+        top += count;
+        depth++;
+
+        return list;
+    }
+
+    /**
+     * Pop the parameters pushed by the last call to {@link #push(ParameterEvaluator, List, Bindings)}.<br>
+     * The context is left unchanged if the list is not the last one pushed, so unbalanced calls cannot corrupt it.
+     *
+     * @param parameters The list of parameters returned by that call
+     * @throws Expr4jException If the list is not the last one pushed
+     */
+    public void pop(List<?> parameters) {
+        if (depth == 0 || lists[depth - 1] != parameters) {
+            throw new Expr4jException("Parameters must be popped in the reverse order of being pushed");
+        }
+        pop();
+    }
+
+    /**
+     * Pop the parameters pushed by the last call to {@link #push(ParameterEvaluator, List, Bindings)}.
+     */
+    void pop() {
+        ParameterList<?> list = lists[--depth];
+        for (int i = list.offset; i < top; i++) {
+            parameters[i].reset(null, null, null, null);
+        }
+        top = list.offset;
+        list.size = 0;
+    }
+
+    /**
+     * Push an array to hold the operands of a primitive operation.<br>
+     * Every call must be followed by a call to {@link #popDoubles()} once the operation returns.
+     *
+     * @param count Number of operands
+     * @return An array of at least the specified length
+     */
+    double[] pushDoubles(int count) {
+        if (doubleDepth == doubles.length) {
+            doubles = Arrays.copyOf(doubles, doubles.length * 2);
+        }
+        double[] operands = doubles[doubleDepth];
+        if (operands == null || operands.length < count) {
+            operands = new double[Math.max(count, 8)];
+            doubles[doubleDepth] = operands;
+        }
+        doubleDepth++;
+        return operands;
+    }
+
+    /**
+     * Pop the array pushed by the last call to {@link #pushDoubles(int)}.
+     */
+    void popDoubles() {
+        doubleDepth--;
+    }
+
+    /**
+     * The <code>ParameterList&lt;T&gt;</code> class is a list view over a range of the parameter stack.
+     *
+     * @param <T> The type of operand
+     */
+    private static final class ParameterList<T> extends AbstractList<ExpressionParameter<T>> implements RandomAccess {
+
+        /**
+         * The context owning the parameter stack.
+         */
+        private final EvaluationContext context;
+
+        /**
+         * Index of the first parameter.
+         */
+        private int offset;
+
+        /**
+         * Number of parameters.
+         */
+        private int size;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param context The context owning the parameter stack
+         */
+        private ParameterList(EvaluationContext context) {
+            this.context = context;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ExpressionParameter<T> get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (ExpressionParameter<T>) context.parameters[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+    }
+
+}
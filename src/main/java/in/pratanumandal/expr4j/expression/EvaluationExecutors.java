@@ -0,0 +1,73 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>EvaluationExecutors</code> class creates executors suited to evaluating expressions asynchronously.<br>
+ * Asynchronous evaluation blocks while waiting for variables and operands, which is cheap on virtual threads.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public final class EvaluationExecutors {
+
+    /**
+     * Private constructor.
+     */
+    private EvaluationExecutors() {
+    }
+
+    /**
+     * Create an executor that starts a virtual thread for each task when running on Java 21 or later,
+     * and otherwise an executor of daemon platform threads created on demand and reused once idle.
+     *
+     * @return The executor, which should be shut down once no longer needed
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return newCachedExecutor();
+        }
+    }
+
+    /**
+     * Create an executor of daemon platform threads created on demand and reused once idle.
+     *
+     * @return The executor, which should be shut down once no longer needed
+     */
+    public static ExecutorService newCachedExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "expr4j-evaluation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+
+}
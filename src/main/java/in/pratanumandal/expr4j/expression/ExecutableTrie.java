@@ -0,0 +1,143 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import java.util.Arrays;
+
+/**
+ * The <code>ExecutableTrie</code> class indexes the labels of executables (operators and functions) by their characters.<br>
+ * It finds the longest label starting at any index of an expression in time proportional to the length of that label.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+final class ExecutableTrie {
+
+    /**
+     * Root of the trie.
+     */
+    private final Node root = new Node();
+
+    /**
+     * Add a label.
+     *
+     * @param label The label
+     */
+    void add(String label) {
+        Node node = root;
+        for (int i = 0; i < label.length(); i++) {
+            node = node.childOrCreate(label.charAt(i));
+        }
+        node.label = label;
+    }
+
+    /**
+     * Remove a label.
+     *
+     * @param label The label
+     */
+    void remove(String label) {
+        Node node = root;
+        for (int i = 0; i < label.length() && node != null; i++) {
+            node = node.child(label.charAt(i));
+        }
+        if (node != null) {
+            node.label = null;
+        }
+    }
+
+    /**
+     * Find the longest label starting at an index.
+     *
+     * @param expression The expression
+     * @param index The index
+     * @return The label if found, null otherwise
+     */
+    String longestMatch(CharSequence expression, int index) {
+        String match = null;
+        Node node = root;
+        for (int i = index; i < expression.length(); i++) {
+            node = node.child(expression.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.label != null) {
+                match = node.label;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * The <code>Node</code> class represents a node of the trie.<br>
+     * Children are kept in parallel arrays sorted by character, as labels typically share few prefixes.
+     */
+    private static final class Node {
+
+        /** Characters leading to the children */
+        private char[] keys = new char[0];
+
+        /** The children */
+        private Node[] children = new Node[0];
+
+        /** Label ending at this node, if any */
+        private String label;
+
+        /**
+         * Get the child for a character.
+         *
+         * @param c The character
+         * @return The child if found, null otherwise
+         */
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * Get the child for a character, creating it if absent.
+         *
+         * @param c The character
+         * @return The child
+         */
+        private Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertion = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+
+            Node child = new Node();
+            newKeys[insertion] = c;
+            newChildren[insertion] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+    }
+
+}
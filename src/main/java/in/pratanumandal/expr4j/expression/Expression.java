@@ -17,20 +17,46 @@
 
 package in.pratanumandal.expr4j.expression;
 
+import in.pratanumandal.expr4j.cache.ConcurrentCache;
 import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.token.Constant;
+import in.pratanumandal.expr4j.token.EagerOperation;
 import in.pratanumandal.expr4j.token.Function;
 import in.pratanumandal.expr4j.token.Operand;
 import in.pratanumandal.expr4j.token.Operator;
 import in.pratanumandal.expr4j.token.OperatorType;
 import in.pratanumandal.expr4j.token.Variable;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
- * The <code>Expression&lt;T&gt;</code> class represents a parsed expression that can be evaluated.
+ * The <code>Expression&lt;T&gt;</code> class represents a parsed expression that can be evaluated.<br><br>
+ *
+ * Expressions are evaluated recursively, evaluating every parameter lazily when an operation asks for its value.
+ * Once evaluation is {@link #ITERATIVE_DEPTH} operations deep, the remaining subtree is evaluated with an explicit stack,
+ * so that expressions of any depth can be evaluated in bounded native stack.
+ * In such a subtree, the operands of every {@link EagerOperation} are evaluated before the operation they are passed to;
+ * each result is returned, or the exception it threw is rethrown, only when the operation asks for its value.
+ * The operands of any other operation are still evaluated lazily: when such an operation asks for the value of an operand
+ * that is itself an operation, it is unwound, the operand is evaluated on the explicit stack, and the operation is run again.
+ * Operands already evaluated are not evaluated again, but whatever the operation does before asking for its operands is repeated,
+ * so operations used in expressions this deep should not have side effects before asking for their operands.<br><br>
+ *
+ * Expressions can also be evaluated asynchronously on an {@link Executor}, optionally evaluating independent
+ * subtrees that call functions concurrently, and fetching variables through an {@link AsyncVariableResolver} as they are reached.
  * 
  * @author Pratanu Mandal
  * @since 1.0
@@ -39,6 +65,11 @@ import java.util.stream.Collectors;
  */
 public class Expression<T> {
 
+	/**
+	 * Depth of evaluation at which the expression tree is evaluated iteratively.
+	 */
+	public static final int ITERATIVE_DEPTH = 256;
+
 	/**
 	 * Root node of the expression tree.
 	 */
@@ -54,6 +85,48 @@ public class Expression<T> {
 	 */
 	private final ExpressionConfig<T> expressionConfig;
 
+	/**
+	 * Labels of the variables in the order of their slots.
+	 */
+	private List<String> variables;
+
+	/**
+	 * Map of variable labels to slots.
+	 */
+	private Map<String, Integer> slots;
+
+	/**
+	 * Number of shared subexpressions.
+	 */
+	private int sharedCount;
+
+	/**
+	 * Number of nodes eliminated by sharing common subexpressions.
+	 */
+	private int eliminatedCount;
+
+	/**
+	 * Modification count of the expression dictionary when this expression was built, used to validate cached expressions.
+	 */
+	long modificationCount;
+
+	/**
+	 * Compiled form of this expression, if any.
+	 */
+	private CompiledExpression<T> compiled;
+
+	/**
+	 * Cache of results keyed on the values of the variables, if any.
+	 */
+	private volatile ConcurrentCache<List<T>, T> resultCache;
+
+	/**
+	 * Evaluator for parameters whose target is a node of the expression tree.
+	 */
+	@SuppressWarnings("unchecked")
+	final ParameterEvaluator<T> nodeEvaluator = (target, bindings, context) ->
+			target instanceof Outcome ? ((Outcome<T>) target).get() : this.evaluate((ExpressionNode) target, bindings, context);
+
 	/**
 	 * Parameterized constructor.
 	 *
@@ -64,26 +137,209 @@ public class Expression<T> {
 					  ExpressionConfig<T> expressionConfig) {
 		this.expressionDictionary = expressionDictionary;
 		this.expressionConfig = expressionConfig;
+		this.setVariables(Collections.emptyList());
+	}
+
+	/**
+	 * Get the expression dictionary.
+	 *
+	 * @return The expression dictionary
+	 */
+	ExpressionDictionary<T> getExpressionDictionary() {
+		return expressionDictionary;
+	}
+
+	/**
+	 * Get the expression configuration.
+	 *
+	 * @return The expression configuration
+	 */
+	ExpressionConfig<T> getExpressionConfig() {
+		return expressionConfig;
+	}
+
+	/**
+	 * Set the labels of the variables in the order of their slots.
+	 *
+	 * @param labels The labels of the variables
+	 */
+	void setVariables(List<String> labels) {
+		Map<String, Integer> slots = new HashMap<>();
+		for (int slot = 0; slot < labels.size(); slot++) {
+			slots.put(labels.get(slot), slot);
+		}
+		this.variables = Collections.unmodifiableList(new ArrayList<>(labels));
+		this.slots = slots;
+	}
+
+	/**
+	 * Set the compiled form of this expression.
+	 *
+	 * @param compiled The compiled expression
+	 */
+	void setCompiled(CompiledExpression<T> compiled) {
+		this.compiled = compiled;
+	}
+
+	/**
+	 * Set the counts of shared subexpressions and of nodes eliminated by sharing them.
+	 *
+	 * @param sharedCount Number of shared subexpressions
+	 * @param eliminatedCount Number of nodes eliminated
+	 */
+	void setShared(int sharedCount, int eliminatedCount) {
+		this.sharedCount = sharedCount;
+		this.eliminatedCount = eliminatedCount;
+	}
+
+	/**
+	 * Get the number of subexpressions that are shared within this expression.<br>
+	 * The value of each shared subexpression is computed at most once per evaluation.
+	 *
+	 * @return The number of shared subexpressions
+	 */
+	public int getSharedCount() {
+		return sharedCount;
+	}
+
+	/**
+	 * Get the number of nodes eliminated from the expression tree by sharing common subexpressions.
+	 *
+	 * @return The number of nodes eliminated
+	 */
+	public int getEliminatedCount() {
+		return eliminatedCount;
+	}
+
+	/**
+	 * Check if this expression has been compiled by an {@link ExpressionCompiler}.
+	 *
+	 * @return True if compiled, false otherwise
+	 */
+	public boolean isCompiled() {
+		return compiled != null;
+	}
+
+	/**
+	 * Get the labels of the variables of this expression in the order of their slots.<br>
+	 * Constants are resolved when the expression is built and do not occupy a slot.
+	 *
+	 * @return The slot layout of this expression
+	 */
+	public List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Get the slot of a variable.
+	 *
+	 * @param label The label of the variable
+	 * @return The slot if found, -1 otherwise
+	 */
+	public int getSlot(String label) {
+		Integer slot = slots.get(label);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Set the cache of results of this expression.<br>
+	 * Results are keyed on the values of the variables of this expression in the order of their slots,
+	 * so values of other variables do not affect the key.
+	 * The cache is used by {@link #evaluate(Bindings, EvaluationContext)} and the methods delegating to it,
+	 * when every variable is bound; otherwise the expression is evaluated without the cache,
+	 * so that variables on branches not taken need not be bound.<br><br>
+	 *
+	 * Only expressions whose operations are all pure can be cached.
+	 * The cache is thread safe, so the expression can be evaluated from many threads with their own bindings.
+	 *
+	 * @param resultCache The cache, which may bound its entries and make them expire, or null to disable caching
+	 */
+	public void setResultCache(ConcurrentCache<List<T>, T> resultCache) {
+		if (resultCache != null && root != null && !isPure(root)) {
+			throw new Expr4jException("Expression must be pure to cache its results");
+		}
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Get the cache of results of this expression.
+	 *
+	 * @return The cache, or null if not set
+	 */
+	public ConcurrentCache<List<T>, T> getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Check if all operations of the expression tree are pure.
+	 *
+	 * @param root Root of the expression tree
+	 * @return True if pure, false otherwise
+	 */
+	private static boolean isPure(ExpressionNode root) {
+		boolean[] pure = { true };
+		ExpressionNode.postorder(root, (node, parent, index) -> {
+			if (node.token instanceof Function) {
+				pure[0] &= ((Function<?>) node.token).pure;
+			}
+			else if (node.token instanceof Operator) {
+				pure[0] &= ((Operator<?>) node.token).pure;
+			}
+		});
+		return pure[0];
+	}
+
+	/**
+	 * Create empty bindings for the variables of this expression.
+	 *
+	 * @return The bindings
+	 */
+	public Bindings<T> bindings() {
+		return new Bindings<>(variables, slots, sharedCount);
 	}
 
 	/**
 	 * Recursively evaluate the expression tree and return the result.
 	 *
 	 * @param node Current node of the expression tree
-	 * @param variables Map of variables
+	 * @param bindings Bindings of variables
+	 * @param context Context used to recycle the parameters of operations
+	 * @return Result of expression evaluation
+	 */
+	protected T evaluate(ExpressionNode node, Bindings<T> bindings, EvaluationContext context) {
+		// encountered shared subexpression
+		if (node.shared != ExpressionNode.NOT_SHARED) {
+			if (bindings.isMemoized(node.shared)) {
+				return bindings.getMemoized(node.shared);
+			}
+
+			T result = evaluateNode(node, bindings, context);
+			bindings.memoize(node.shared, result);
+			return result;
+		}
+
+		return evaluateNode(node, bindings, context);
+	}
+
+	/**
+	 * Evaluate a node of the expression tree, without looking up the value of shared subexpressions.
+	 *
+	 * @param node Current node of the expression tree
+	 * @param bindings Bindings of variables
+	 * @param context Context used to recycle the parameters of operations
 	 * @return Result of expression evaluation
 	 */
 	@SuppressWarnings("unchecked")
-	protected Operand<T> evaluate(ExpressionNode node, Map<String, T> variables) {
+	private T evaluateNode(ExpressionNode node, Bindings<T> bindings, EvaluationContext context) {
 		// encountered variable
 		if (node.token instanceof Variable) {
 			Variable variable = (Variable) node.token;
 
-			if (!variables.containsKey(variable.label)) {
-				throw new Expr4jException("Variable not found: " + variable.label);
+			if (variable.slot == Variable.UNRESOLVED) {
+				return bindings.get(variable.label);
 			}
 
-			return new Operand<T>(variables.get(variable.label));
+			return bindings.get(variable.slot);
 		}
 
 		// encountered function
@@ -95,10 +351,17 @@ public class Expression<T> {
 				throw new Expr4jException("Invalid expression");
 			}
 
-			List<ExpressionParameter<T>> parameters = node.children.stream()
-					.map(e -> new ExpressionParameter<T>(this, e, variables))
-					.collect(Collectors.toList());
-			return new Operand<T>(function.evaluate(parameters));
+			if (context.depth() >= ITERATIVE_DEPTH) {
+				return evaluateIteratively(node, bindings, context);
+			}
+
+			List<ExpressionParameter<T>> parameters = context.push(nodeEvaluator, node.children, bindings);
+			try {
+				return function.evaluate(parameters);
+			}
+			finally {
+				context.pop();
+			}
 		}
 
 		// encountered operator
@@ -110,34 +373,243 @@ public class Expression<T> {
 				throw new Expr4jException("Invalid expression");
 			}
 
-			List<ExpressionParameter<T>> parameters = node.children.stream()
-					.map(e -> new ExpressionParameter<T>(this, e, variables))
-					.collect(Collectors.toList());
-			return new Operand<T>(operator.evaluate(parameters));
+			if (context.depth() >= ITERATIVE_DEPTH) {
+				return evaluateIteratively(node, bindings, context);
+			}
+
+			List<ExpressionParameter<T>> parameters = context.push(nodeEvaluator, node.children, bindings);
+			try {
+				return operator.evaluate(parameters);
+			}
+			finally {
+				context.pop();
+			}
 		}
 
 		// encountered operand
 		else {
-			return (Operand<T>) node.token;
+			return ((Operand<T>) node.token).value;
 		}
 	}
 
 	/**
-	 * Evaluate the expression against a set of variables.<br>
-	 * Variables passed to this method override an predefined constants with the same label.
+	 * Evaluate the expression tree using an explicit stack of frames, one for each operation being evaluated.<br>
+	 * The operands of eager operations are evaluated before the operations they are passed to.
+	 * Any other operation is run with lazy operands. Operands that are variables or operands are evaluated when requested,
+	 * but when the operation asks for the value of an operand that is itself an operation, the operation is suspended,
+	 * the operand is evaluated on the explicit stack, and the operation is run again with the outcome of that operand.
 	 *
-	 * @param variables Map of variables
+	 * @param root Root of the subtree to evaluate, which must be an operation
+	 * @param bindings Bindings of variables
+	 * @param context Context used to recycle the parameters of operations
+	 * @return Result of expression evaluation
+	 */
+	private T evaluateIteratively(ExpressionNode root, Bindings<T> bindings, EvaluationContext context) {
+		Frame frame = new Frame(root, null, 0);
+
+		while (true) {
+			ExpressionNode node = frame.node;
+
+			// evaluate the operands of an eager operation ahead, leaving variables and operands to be evaluated when requested
+			if (frame.eager && frame.next < frame.operands.length) {
+				int index = frame.next++;
+				ExpressionNode child = node.children.get(index);
+				if (isDeferred(child, bindings)) {
+					frame = new Frame(child, frame, index);
+				}
+				continue;
+			}
+
+			frame.requested = Frame.NONE;
+			Outcome<T> outcome = evaluateOperation(node, frame.targets, frame, bindings, context);
+
+			// the operation asked for an operand not yet evaluated, so evaluate it and run the operation again
+			if (frame.requested != Frame.NONE) {
+				frame = new Frame(node.children.get(frame.requested), frame, frame.requested);
+				continue;
+			}
+
+			if (node.shared != ExpressionNode.NOT_SHARED && outcome.exception == null) {
+				bindings.memoize(node.shared, outcome.result);
+			}
+
+			if (frame.parent == null) {
+				return outcome.get();
+			}
+			frame.parent.operands[frame.index] = outcome;
+			frame = frame.parent;
+		}
+	}
+
+	/**
+	 * Check if a node is an operation to evaluate on the explicit stack, rather than when its value is requested.
+	 *
+	 * @param node The node
+	 * @param bindings Bindings of variables
+	 * @return True if the node is an operation whose value is not memoized, false otherwise
+	 */
+	private static boolean isDeferred(ExpressionNode node, Bindings<?> bindings) {
+		return node.children != null && (node.shared == ExpressionNode.NOT_SHARED || !bindings.isMemoized(node.shared));
+	}
+
+	/**
+	 * Check if a node is an operation that evaluates all of its operands.
+	 *
+	 * @param node The node
+	 * @return True if eager, false otherwise
+	 */
+	static boolean isEager(ExpressionNode node) {
+		if (node.token instanceof Function) {
+			return ((Function<?>) node.token).isEager();
+		}
+		else if (node.token instanceof Operator) {
+			return ((Operator<?>) node.token).isEager();
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluate the operation of a node with the specified operands, capturing the result or the exception thrown.
+	 *
+	 * @param node The node of the operation
+	 * @param operands The targets of the operands
+	 * @param evaluator Evaluator of the targets
+	 * @param bindings Bindings of variables
+	 * @param context Context used to recycle the parameters of operations
+	 * @return The outcome of the operation
+	 */
+	@SuppressWarnings("unchecked")
+	private Outcome<T> evaluateOperation(ExpressionNode node, List<?> operands, ParameterEvaluator<T> evaluator,
+										 Bindings<T> bindings, EvaluationContext context) {
+		Function<T> function = node.token instanceof Function ? (Function<T>) node.token : null;
+		Operator<T> operator = node.token instanceof Operator ? (Operator<T>) node.token : null;
+
+		int operandCount;
+		if (function != null) {
+			operandCount = function.parameters;
+		}
+		else {
+			operandCount = (operator.type == OperatorType.INFIX || operator.type == OperatorType.INFIX_RTL) ? 2 : 1;
+		}
+
+		if (operands.size() != operandCount) {
+			return new Outcome<>(null, new Expr4jException("Invalid expression"));
+		}
+
+		List<ExpressionParameter<T>> parameters = context.push(evaluator, operands, bindings);
+		try {
+			return new Outcome<>(function != null ? function.evaluate(parameters) : operator.evaluate(parameters), null);
+		}
+		catch (RuntimeException e) {
+			return new Outcome<>(null, e);
+		}
+		finally {
+			context.pop();
+		}
+	}
+
+	/**
+	 * Evaluate the expression against bindings of variables.<br>
+	 * The parameters of operations are recycled from the specified context,
+	 * so repeated evaluations with the same context do not allocate beyond what the operations themselves allocate.
+	 *
+	 * @param bindings Bindings of variables created by {@link #bindings()}
+	 * @param context Context used to recycle the parameters of operations, for example {@link EvaluationContext#current()}
 	 * @return Evaluated result
 	 */
-	public T evaluate(Map<String, T> variables) {
+	public T evaluate(Bindings<T> bindings, EvaluationContext context) {
 		if (root == null) {
 			throw new Expr4jException("Invalid expression");
 		}
 
-		Map<String, T> constantsAndVariables = new HashMap<>(expressionDictionary.constants);
-		if (variables != null) constantsAndVariables.putAll(variables);
+		if (bindings.variables != this.variables) {
+			throw new Expr4jException("Bindings do not belong to this expression");
+		}
+
+		ConcurrentCache<List<T>, T> resultCache = this.resultCache;
+		if (resultCache != null && isBound(bindings)) {
+			// look up the live values, and copy them into a key only to cache a new result
+			List<T> values = bindings.values();
+			T result = resultCache.getIfPresent(values);
+			if (result == null) {
+				result = evaluateUncached(bindings, context);
+				if (result != null) {
+					resultCache.put(new ArrayList<>(values), result);
+				}
+			}
+			return result;
+		}
+
+		return evaluateUncached(bindings, context);
+	}
+
+	/**
+	 * Check if every variable is bound, so that the result can be keyed on the values of the variables in the order of their slots.
+	 *
+	 * @param bindings Bindings of variables
+	 * @return True if every variable is bound, false otherwise
+	 */
+	private static boolean isBound(Bindings<?> bindings) {
+		for (int slot = 0; slot < bindings.size(); slot++) {
+			if (!bindings.isBound(slot)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluate the expression against bindings of variables without looking up the cache of results.
+	 *
+	 * @param bindings Bindings of variables created by {@link #bindings()}
+	 * @param context Context used to recycle the parameters of operations
+	 * @return Evaluated result
+	 */
+	private T evaluateUncached(Bindings<T> bindings, EvaluationContext context) {
+		// discard the values of shared subexpressions and resolved variables from previous evaluations
+		bindings.invalidate();
+
+		if (compiled != null) {
+			return compiled.evaluate(bindings, context);
+		}
 
-		return evaluate(root, constantsAndVariables).value;
+		return evaluate(root, bindings, context);
+	}
+
+	/**
+	 * Evaluate the expression against bindings of variables.<br>
+	 * The parameters of operations are recycled from the context of the current thread.
+	 *
+	 * @param bindings Bindings of variables created by {@link #bindings()}
+	 * @return Evaluated result
+	 */
+	public T evaluate(Bindings<T> bindings) {
+		return evaluate(bindings, EvaluationContext.current());
+	}
+
+	/**
+	 * Evaluate the expression against a set of variables.<br>
+	 * Constants are resolved when the expression is built, so entries with the label of a constant are ignored.
+	 *
+	 * @param variables Map of variables
+	 * @return Evaluated result
+	 */
+	public T evaluate(Map<String, T> variables) {
+		Bindings<T> bindings = this.bindings();
+		if (variables != null) bindings.setAll(variables);
+
+		return evaluate(bindings);
+	}
+
+	/**
+	 * Evaluate the expression, resolving variables on demand.<br>
+	 * Only the variables that evaluation reaches are resolved, each at most once.
+	 *
+	 * @param resolver Resolver of the variables
+	 * @return Evaluated result
+	 */
+	public T evaluate(VariableResolver<T> resolver) {
+		return evaluate(this.bindings().setResolver(resolver));
 	}
 
 	/**
@@ -146,21 +618,291 @@ public class Expression<T> {
 	 * @return Evaluated result
 	 */
 	public T evaluate() {
-		return evaluate(new HashMap<String, T>());
+		return evaluate(this.bindings());
+	}
+
+	/**
+	 * Evaluate the expression asynchronously against bindings of variables.<br>
+	 * The values of the variables are copied when this method is called, so the bindings can be reused immediately.
+	 *
+	 * @param bindings Bindings of variables created by {@link #bindings()}
+	 * @param executor Executor to evaluate the expression on
+	 * @return Future holding the evaluated result
+	 */
+	public CompletableFuture<T> evaluateAsync(Bindings<T> bindings, Executor executor) {
+		return evaluateAsync(bindings, executor, false);
+	}
+
+	/**
+	 * Evaluate the expression asynchronously against bindings of variables.<br>
+	 * The values of the variables are copied when this method is called, so the bindings can be reused immediately.<br><br>
+	 *
+	 * In concurrent mode, wherever an eager operation, one that implements {@link in.pratanumandal.expr4j.token.EagerOperation},
+	 * has two or more operands that call functions,
+	 * each of those operands is evaluated as a separate task on the executor, and the operation is applied once all of them complete.
+	 * Operands of other operations are never evaluated speculatively, so a branch not taken is neither evaluated nor fetches its variables.
+	 * Such operands are evaluated before the operation asks for their value;
+	 * the exception an operand threw is rethrown only when the operation asks for its value.
+	 * Every other operand is evaluated lazily by the task applying the operation.
+	 * Cancelling the returned future prevents the tasks that have not started yet from being evaluated.
+	 *
+	 * @param bindings Bindings of variables created by {@link #bindings()}
+	 * @param executor Executor to evaluate the expression on
+	 * @param concurrent True to evaluate independent operands of eager operations that call functions concurrently, false to evaluate the expression in one task
+	 * @return Future holding the evaluated result
+	 */
+	public CompletableFuture<T> evaluateAsync(Bindings<T> bindings, Executor executor, boolean concurrent) {
+		if (root == null) {
+			throw new Expr4jException("Invalid expression");
+		}
+
+		if (bindings.variables != this.variables) {
+			throw new Expr4jException("Bindings do not belong to this expression");
+		}
+
+		return evaluateSnapshot(bindings.copy(), executor, concurrent);
+	}
+
+	/**
+	 * Evaluate the expression asynchronously, fetching the variables through a resolver.<br>
+	 * Only the variables that evaluation reaches are fetched; those not reached, for example in a branch not taken, are never fetched.
+	 *
+	 * @param resolver Resolver fetching the values of the variables
+	 * @param executor Executor to evaluate the expression on, for example {@link EvaluationExecutors#newVirtualThreadExecutor()}
+	 * @return Future holding the evaluated result
+	 */
+	public CompletableFuture<T> evaluateAsync(AsyncVariableResolver<T> resolver, Executor executor) {
+		return evaluateAsync(this.bindings(), resolver, executor, false);
+	}
+
+	/**
+	 * Evaluate the expression asynchronously against bindings of variables, fetching the variables that are not bound through a resolver.<br>
+	 * Only the variables that evaluation reaches are fetched, each at most once.
+	 * Variables requested while a fetch is in flight, for example by operands evaluated concurrently, are fetched together in the next batch.
+	 * Tasks wait for the values they need, so an executor of virtual threads is preferable when fetching is slow.
+	 *
+	 * @param bindings Bindings of variables created by {@link #bindings()}
+	 * @param resolver Resolver fetching the values of the variables that are not bound
+	 * @param executor Executor to evaluate the expression on, for example {@link EvaluationExecutors#newVirtualThreadExecutor()}
+	 * @param concurrent True to evaluate independent operands of eager operations that call functions concurrently, false to evaluate the expression in one task
+	 * @return Future holding the evaluated result
+	 * @see #evaluateAsync(Bindings, Executor, boolean)
+	 */
+	public CompletableFuture<T> evaluateAsync(Bindings<T> bindings, AsyncVariableResolver<T> resolver, Executor executor, boolean concurrent) {
+		if (root == null) {
+			throw new Expr4jException("Invalid expression");
+		}
+
+		if (bindings.variables != this.variables) {
+			throw new Expr4jException("Bindings do not belong to this expression");
+		}
+
+		Bindings<T> snapshot = bindings.copy();
+		snapshot.resolver = new VariableLoader<>(resolver);
+
+		return evaluateSnapshot(snapshot, executor, concurrent);
+	}
+
+	/**
+	 * Evaluate the expression asynchronously against a snapshot of bindings which is not modified.
+	 *
+	 * @param snapshot Bindings of variables, copied by every task
+	 * @param executor Executor to evaluate the expression on
+	 * @param concurrent True to evaluate independent operands of eager operations that call functions concurrently, false to evaluate the expression in one task
+	 * @return Future holding the evaluated result
+	 */
+	private CompletableFuture<T> evaluateSnapshot(Bindings<T> snapshot, Executor executor, boolean concurrent) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+
+		CompletableFuture<Outcome<T>> outcome;
+		if (concurrent && ExpressionNode.height(root) <= ITERATIVE_DEPTH) {
+			Set<ExpressionNode> calling = callingNodes(root);
+			outcome = schedule(root, snapshot, executor, result, calling, new IdentityHashMap<>());
+		}
+		else {
+			outcome = CompletableFuture.supplyAsync(() -> evaluateTask(root, null, null, snapshot, result), executor);
+		}
+
+		outcome.whenComplete((value, throwable) -> {
+			if (throwable != null) {
+				result.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+			}
+			else {
+				try {
+					result.complete(value.get());
+				}
+				catch (RuntimeException e) {
+					result.completeExceptionally(e);
+				}
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * Find the nodes of the expression tree whose subtree calls a function.
+	 *
+	 * @param root Root of the expression tree
+	 * @return The set of nodes
+	 */
+	private static Set<ExpressionNode> callingNodes(ExpressionNode root) {
+		Set<ExpressionNode> calling = Collections.newSetFromMap(new IdentityHashMap<>());
+		ExpressionNode.postorder(root, (node, parent, index) -> {
+			if (parent != null && (node.token instanceof Function || calling.contains(node))) {
+				calling.add(parent);
+			}
+		});
+		return calling;
+	}
+
+	/**
+	 * Schedule the tasks evaluating a subtree of the expression.<br>
+	 * Shared subexpressions are scheduled once, so they are evaluated once even when they are operands of several tasks.
+	 *
+	 * @param node Root of the subtree
+	 * @param snapshot Bindings of variables, copied by every task
+	 * @param executor Executor to evaluate the tasks on
+	 * @param result Future holding the result of the expression, which cancels the tasks not yet started once done
+	 * @param calling Nodes whose subtree calls a function
+	 * @param scheduled Tasks already scheduled for shared subexpressions
+	 * @return Future holding the outcome of the subtree
+	 */
+	private CompletableFuture<Outcome<T>> schedule(ExpressionNode node, Bindings<T> snapshot, Executor executor, CompletableFuture<T> result,
+												   Set<ExpressionNode> calling, Map<ExpressionNode, CompletableFuture<Outcome<T>>> scheduled) {
+		CompletableFuture<Outcome<T>> future = scheduled.get(node);
+		if (future != null) {
+			return future;
+		}
+
+		// only the operands of eager operations are certain to be evaluated, so those of other operations are never forked
+		int callingCount = 0;
+		if (node.children != null && isEager(node)) {
+			for (ExpressionNode child : node.children) {
+				if (child.token instanceof Function || calling.contains(child)) {
+					callingCount++;
+				}
+			}
+		}
+
+		// evaluate the subtree in one task unless it has independent operands to evaluate concurrently
+		if (callingCount < 2) {
+			future = CompletableFuture.supplyAsync(() -> evaluateTask(node, null, null, snapshot, result), executor);
+		}
+		else {
+			int childCount = node.children.size();
+			Object[] operands = new Object[childCount];
+			CompletableFuture<?>[] forked = new CompletableFuture<?>[childCount];
+			List<CompletableFuture<?>> dependencies = new ArrayList<>(callingCount);
+
+			for (int i = 0; i < childCount; i++) {
+				ExpressionNode child = node.children.get(i);
+				if (child.token instanceof Function || calling.contains(child)) {
+					forked[i] = schedule(child, snapshot, executor, result, calling, scheduled);
+					dependencies.add(forked[i]);
+				}
+				else {
+					operands[i] = child;
+				}
+			}
+
+			future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+					.thenApplyAsync(ignored -> evaluateTask(node, operands, forked, snapshot, result), executor);
+		}
+
+		if (node.shared != ExpressionNode.NOT_SHARED) {
+			scheduled.put(node, future);
+		}
+		return future;
+	}
+
+	/**
+	 * Evaluate a task of asynchronous evaluation with its own bindings and context.
+	 *
+	 * @param node Root of the subtree to evaluate
+	 * @param operands The operands of the node, each either a node or null if forked, or null to evaluate the whole subtree
+	 * @param forked Futures holding the outcomes of the forked operands
+	 * @param snapshot Bindings of variables to copy
+	 * @param result Future holding the result of the expression
+	 * @return The outcome of the subtree
+	 */
+	@SuppressWarnings("unchecked")
+	private Outcome<T> evaluateTask(ExpressionNode node, Object[] operands, CompletableFuture<?>[] forked,
+									Bindings<T> snapshot, CompletableFuture<T> result) {
+		// the expression was cancelled or has already failed
+		if (result.isDone()) {
+			throw new CancellationException();
+		}
+
+		Bindings<T> bindings = snapshot.copy();
+		EvaluationContext context = new EvaluationContext();
+
+		if (operands == null) {
+			try {
+				return new Outcome<>(evaluate(node, bindings, context), null);
+			}
+			catch (RuntimeException e) {
+				return new Outcome<>(null, e);
+			}
+		}
+
+		Object[] targets = operands.clone();
+		for (int i = 0; i < targets.length; i++) {
+			if (forked[i] != null) {
+				targets[i] = forked[i].join();
+			}
+		}
+		return evaluateOperation(node, Arrays.asList(targets), nodeEvaluator, bindings, context);
 	}
 
 	/**
-	 * Form string representation of expression.
+	 * Form string representation of expression.<br>
+	 * The tree is rendered with an explicit stack of pieces, each either a string or a node still to be rendered.
 	 *
 	 * @param node Current node of the expression tree
 	 * @return Result of expression evaluation
 	 */
-	@SuppressWarnings("unchecked")
 	protected String toString(ExpressionNode node) {
+		StringBuilder sb = new StringBuilder();
+
+		Deque<Object> pieces = new ArrayDeque<>();
+		pieces.push(node);
+
+		List<Object> expansion = new ArrayList<>();
+
+		while (!pieces.isEmpty()) {
+			Object piece = pieces.pop();
+
+			if (piece instanceof String) {
+				sb.append((String) piece);
+			}
+			else {
+				expansion.clear();
+				this.expand((ExpressionNode) piece, expansion);
+
+				// push in reverse so that the first piece is rendered first
+				for (int i = expansion.size() - 1; i >= 0; i--) {
+					pieces.push(expansion.get(i));
+				}
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Expand a node into the pieces of its string representation.<br>
+	 * Each piece is either a string or a child node.
+	 *
+	 * @param node The node to expand
+	 * @param pieces List to add the pieces to
+	 */
+	@SuppressWarnings("unchecked")
+	private void expand(ExpressionNode node, List<Object> pieces) {
 		// encountered variable
 		if (node.token instanceof Variable) {
 			Variable variable = (Variable) node.token;
-			return variable.label;
+			pieces.add(variable.label);
 		}
 
 		// encountered function
@@ -172,9 +914,12 @@ public class Expression<T> {
 				throw new Expr4jException("Invalid expression");
 			}
 
-			String operands = node.children.stream().map(this::toString).collect(Collectors.joining(", "));
-
-			return function.label + "(" + operands + ")";
+			pieces.add(function.label + "(");
+			for (int i = 0; i < node.children.size(); i++) {
+				if (i > 0) pieces.add(", ");
+				pieces.add(node.children.get(i));
+			}
+			pieces.add(")");
 		}
 
 		// encountered operator
@@ -191,80 +936,247 @@ public class Expression<T> {
 			else label = operator.label;
 
 			if (operandCount == 2) {
-				StringBuilder sb = new StringBuilder();
-
 				ExpressionNode left = node.children.get(0);
 				ExpressionNode right = node.children.get(1);
 
-				if (left.token instanceof Operator) {
-					Operator<T> leftOperator = (Operator<T>) left.token;
-					if (!leftOperator.label.equals("*") &&
-							(leftOperator.type == OperatorType.INFIX || leftOperator.type == OperatorType.INFIX_RTL) &&
-							operator.compareTo(leftOperator) < 0) {
-						sb.append("(");
-						sb.append(this.toString(left));
-						sb.append(")");
-					} else {
-						sb.append(this.toString(left));
-					}
-				} else {
-					sb.append(this.toString(left));
-				}
-
-				sb.append(label);
-
-				if (right.token instanceof Operator) {
-					Operator<T> rightOperator = (Operator<T>) right.token;
-					if (!rightOperator.label.equals("*") &&
-							(rightOperator.type == OperatorType.INFIX || rightOperator.type == OperatorType.INFIX_RTL) &&
-							operator.compareTo(rightOperator) < 0) {
-						sb.append("(");
-						sb.append(this.toString(right));
-						sb.append(")");
-					} else {
-						sb.append(this.toString(right));
-					}
-				} else {
-					sb.append(this.toString(right));
-				}
-
-				return sb.toString();
+				this.expandOperand(operator, left, pieces);
+				pieces.add(label);
+				this.expandOperand(operator, right, pieces);
 			} else {
 				ExpressionNode child = node.children.get(0);
 				if (operator.label.equals("+") || operator.label.equals("-")) {
 					if (child.token instanceof Operator) {
 						Operator<T> childOperator = (Operator<T>) child.token;
 						if (childOperator.type == OperatorType.PREFIX) {
-							return label + this.toString(child);
+							pieces.add(label);
+							pieces.add(child);
 						} else {
-							return label + "(" + this.toString(child) + ")";
+							pieces.add(label + "(");
+							pieces.add(child);
+							pieces.add(")");
 						}
 					} else {
-						return label + this.toString(child);
+						pieces.add(label);
+						pieces.add(child);
 					}
 				} else if (child.token instanceof Operator || child.token instanceof Function) {
 					if (operator.type == OperatorType.PREFIX) {
-						return label + "(" + this.toString(child) + ")";
+						pieces.add(label + "(");
+						pieces.add(child);
+						pieces.add(")");
 					} else {
-						return "(" + this.toString(child) + ") " + label;
+						pieces.add("(");
+						pieces.add(child);
+						pieces.add(") " + label);
 					}
 				} else {
 					if (operator.type == OperatorType.PREFIX) {
-						return label + " " + this.toString(child);
+						pieces.add(label + " ");
+						pieces.add(child);
 					} else {
-						return this.toString(child) + " " + label;
+						pieces.add(child);
+						pieces.add(" " + label);
 					}
 				}
 			}
 		}
 
+		// encountered constant
+		else if (node.token instanceof Constant) {
+			Constant<T> constant = (Constant<T>) node.token;
+			pieces.add(constant.label);
+		}
+
 		// encountered operand
 		else {
 			Operand<T> operand = (Operand<T>) node.token;
-			return expressionConfig.operandToString(operand.value);
+			pieces.add(expressionConfig.operandToString(operand.value));
 		}
 	}
 
+	/**
+	 * Expand an operand of an infix operator, enclosing it in parenthesis if it binds weaker than the operator.
+	 *
+	 * @param operator The infix operator
+	 * @param operand The operand
+	 * @param pieces List to add the pieces to
+	 */
+	@SuppressWarnings("unchecked")
+	private void expandOperand(Operator<T> operator, ExpressionNode operand, List<Object> pieces) {
+		if (operand.token instanceof Operator) {
+			Operator<T> operandOperator = (Operator<T>) operand.token;
+			if (!operandOperator.label.equals("*") &&
+					(operandOperator.type == OperatorType.INFIX || operandOperator.type == OperatorType.INFIX_RTL) &&
+					operator.compareTo(operandOperator) < 0) {
+				pieces.add("(");
+				pieces.add(operand);
+				pieces.add(")");
+				return;
+			}
+		}
+		pieces.add(operand);
+	}
+
+	/**
+	 * The <code>Frame</code> class is an operation being evaluated on the explicit stack of {@link #evaluateIteratively}.<br>
+	 * It is the evaluator of the parameters of its operation, whose targets are the indices of the operands.
+	 */
+	private final class Frame implements ParameterEvaluator<T> {
+
+		/**
+		 * Index requested when no operand has been requested.
+		 */
+		private static final int NONE = -1;
+
+		/**
+		 * Node of the operation.
+		 */
+		private final ExpressionNode node;
+
+		/**
+		 * Frame of the operation this operation is an operand of, or null if this is the root.
+		 */
+		private final Frame parent;
+
+		/**
+		 * Index of this operation among the operands of the parent.
+		 */
+		private final int index;
+
+		/**
+		 * Flag to indicate if the operation is eager.
+		 */
+		private final boolean eager;
+
+		/**
+		 * Outcomes of the operands evaluated so far, null for those not yet evaluated.
+		 */
+		private final Object[] operands;
+
+		/**
+		 * Targets of the parameters, which are the indices of the operands.
+		 */
+		private final List<Integer> targets;
+
+		/**
+		 * Index of the next operand of an eager operation to evaluate ahead.
+		 */
+		private int next;
+
+		/**
+		 * Index of the operand the operation asked for while suspended, or {@link #NONE}.
+		 */
+		private int requested;
+
+		/**
+		 * Parameterized constructor.
+		 *
+		 * @param node Node of the operation
+		 * @param parent Frame of the parent operation, or null if this is the root
+		 * @param index Index of this operation among the operands of the parent
+		 */
+		private Frame(ExpressionNode node, Frame parent, int index) {
+			this.node = node;
+			this.parent = parent;
+			this.index = index;
+			this.eager = isEager(node);
+
+			int count = node.children.size();
+			this.operands = new Object[count];
+			Integer[] targets = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				targets[i] = i;
+			}
+			this.targets = Arrays.asList(targets);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T evaluate(Object target, Bindings<T> bindings, EvaluationContext context) {
+			int index = (Integer) target;
+
+			Object operand = operands[index];
+			if (operand != null) {
+				return ((Outcome<T>) operand).get();
+			}
+
+			if (requested == NONE) {
+				ExpressionNode child = node.children.get(index);
+				if (!isDeferred(child, bindings)) {
+					return Expression.this.evaluate(child, bindings, context);
+				}
+				requested = index;
+			}
+
+			// the operation is suspended, and further requests are refused until it is run again
+			throw Suspension.INSTANCE;
+		}
+
+	}
+
+	/**
+	 * The <code>Suspension</code> class unwinds an operation that asked for an operand not yet evaluated.<br>
+	 * An operation that catches it and returns anyway is still run again, because its frame records the request.
+	 */
+	private static final class Suspension extends RuntimeException {
+
+		/**
+		 * The shared instance, which has no stack trace.
+		 */
+		private static final Suspension INSTANCE = new Suspension();
+
+		/**
+		 * No-Argument Constructor.
+		 */
+		private Suspension() {
+			super("Operation suspended", null, false, false);
+		}
+
+	}
+
+	/**
+	 * The <code>Outcome&lt;T&gt;</code> class holds the result of an operation evaluated ahead of its value being requested,
+	 * or the exception it threw.
+	 *
+	 * @param <T> The type of operand
+	 */
+	private static final class Outcome<T> {
+
+		/**
+		 * The result.
+		 */
+		private final T result;
+
+		/**
+		 * The exception thrown, if any.
+		 */
+		private final RuntimeException exception;
+
+		/**
+		 * Parameterized constructor.
+		 *
+		 * @param result The result
+		 * @param exception The exception thrown, if any
+		 */
+		private Outcome(T result, RuntimeException exception) {
+			this.result = result;
+			this.exception = exception;
+		}
+
+		/**
+		 * Get the result, or rethrow the exception thrown.
+		 *
+		 * @return The result
+		 */
+		private T get() {
+			if (exception != null) {
+				throw exception;
+			}
+			return result;
+		}
+
+	}
+
 	/**
 	 * Get string representation of expression.
 	 */
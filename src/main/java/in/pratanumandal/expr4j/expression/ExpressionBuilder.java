@@ -17,18 +17,26 @@
 
 package in.pratanumandal.expr4j.expression;
 
-import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.cache.ConcurrentCache;
+import in.pratanumandal.expr4j.token.Constant;
 import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operand;
 import in.pratanumandal.expr4j.token.Operator;
-import in.pratanumandal.expr4j.token.OperatorType;
 import in.pratanumandal.expr4j.token.Token;
+import in.pratanumandal.expr4j.token.Variable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
 
 /**
  * The <code>ExpressionBuilder&lt;T&gt;</code> class provides a partial implementation to build expressions independent of the type of operand.<br>
  * An expression is created from the postfix (or RPN) expression. The expression can then be evaluated.<br><br>
+ *
+ * The builder keeps no state between the steps of a build, so a single builder may build expressions from multiple threads concurrently,
+ * as long as its expression dictionary is not modified meanwhile.<br><br>
  * 
  * @author Pratanu Mandal
  * @since 1.0
@@ -37,21 +45,41 @@ import java.util.Stack;
  */
 public class ExpressionBuilder<T> {
 	
-	/**
-	 * Instance of expression.
-	 */
-	private Expression<T> expression;
-	
 	/**
 	 * Expression dictionary.
 	 */
-	private ExpressionDictionary<T> expressionDictionary;
+	private volatile ExpressionDictionary<T> expressionDictionary;
 
 	/**
 	 * Expression configuration.
 	 */
 	private final ExpressionConfig<T> expressionConfig;
 
+	/**
+	 * Expression compiler.
+	 */
+	private volatile ExpressionCompiler expressionCompiler;
+
+	/**
+	 * Flag to indicate if pure operations on constant operands are evaluated when building.
+	 */
+	private volatile boolean constantFolding = true;
+
+	/**
+	 * Flag to indicate if common subexpressions made of pure operations are shared when building.
+	 */
+	private volatile boolean subexpressionElimination = true;
+
+	/**
+	 * Cache of built expressions by expression string.
+	 */
+	private volatile ConcurrentCache<String, Expression<T>> expressionCache;
+
+	/**
+	 * Modification count of the expression dictionary when the cache was last validated.
+	 */
+	private volatile long cacheModificationCount;
+
 	/**
 	 * Parameterized constructor
 	 *
@@ -67,97 +95,210 @@ public class ExpressionBuilder<T> {
 	 */
 	public void reset() {
 		expressionDictionary = new ExpressionDictionary<>();
+		invalidateCache();
+	}
+
+	/**
+	 * Remove all cached expressions.
+	 */
+	private void invalidateCache() {
+		cacheModificationCount = expressionDictionary.getModificationCount();
+		if (expressionCache != null) {
+			expressionCache.invalidateAll();
+		}
 	}
 
 	/**
-	 * Method to form the expression tree recursively.
+	 * Method to resolve the variables in the token list.<br>
+	 * Constants are replaced by their values and every distinct variable is assigned a slot.
 	 *
-	 * @param node Current node of the expression tree
-	 * @param token Token to be inserted
-	 * @return true if token could be inserted, otherwise false
+	 * @param dictionary The expression dictionary
+	 * @param tokenList The token list
+	 * @return The labels of the variables in the order of their slots
 	 */
-	@SuppressWarnings("unchecked")
-	private boolean formTree(ExpressionNode node, Token token) {
-		if (node.token instanceof Function) {
-			Function<T> function = (Function<T>) node.token;
+	private List<String> resolveVariables(ExpressionDictionary<T> dictionary, List<Token> tokenList) {
+		List<String> labels = new ArrayList<>();
+		Map<String, Integer> slots = new HashMap<>();
 
-			int operandCount = function.parameters;
+		for (int i = 0; i < tokenList.size(); i++) {
+			Token token = tokenList.get(i);
 
-			if (node.children.size() > 0 && formTree(node.children.get(0), token)) {
-				return true;
-			}
-			else if (node.children.size() < operandCount) {
-				node.children.add(0, new ExpressionNode(token));
-				return true;
+			if (token instanceof Variable) {
+				Variable variable = (Variable) token;
+
+				if (dictionary.constants.containsKey(variable.label)) {
+					tokenList.set(i, new Constant<T>(variable.label, dictionary.constants.get(variable.label)));
+				}
+				else {
+					Integer slot = slots.get(variable.label);
+					if (slot == null) {
+						slot = labels.size();
+						slots.put(variable.label, slot);
+						labels.add(variable.label);
+					}
+					tokenList.set(i, new Variable(variable.label, slot));
+				}
 			}
 		}
-		else if (node.token instanceof Operator) {
-			Operator<T> operator = (Operator<T>) node.token;
 
-			int operandCount = (operator.type == OperatorType.INFIX || operator.type == OperatorType.INFIX_RTL) ? 2 : 1;
+		return labels;
+	}
+
+	/**
+	 * Method to fold constant subtrees of the expression tree.<br>
+	 * Every pure operator or function whose operands are all operands or constants is evaluated and replaced by an operand holding its result.
+	 * Operations that fail are left in place, so that they fail when the expression is evaluated.
+	 *
+	 * @param expression The expression
+	 */
+	private void foldConstants(Expression<T> expression) {
+		Bindings<T> bindings = expression.bindings();
+		EvaluationContext context = EvaluationContext.current();
+
+		ExpressionNode.postorder(expression.root, (node, parent, index) -> {
+			if (!this.isFoldable(node)) {
+				return;
+			}
 
-			if (node.children.size() > 0 && formTree(node.children.get(0), token)) {
-				return true;
+			T value;
+			try {
+				value = expression.evaluate(node, bindings, context);
 			}
-			else if (node.children.size() < operandCount) {
-				node.children.add(0, new ExpressionNode(token));
-				return true;
+			catch (RuntimeException e) {
+				return;
 			}
-		}
 
-		return false;
+			ExpressionNode folded = new ExpressionNode(new Operand<>(value));
+			if (parent == null) {
+				expression.root = folded;
+			}
+			else {
+				parent.children.set(index, folded);
+			}
+		});
 	}
 
 	/**
-	 * Method to form the expression tree.
+	 * Method to check if a node is a pure operation on operands or constants only.
+	 *
+	 * @param node The node
+	 * @return true if the node can be folded, otherwise false
 	 */
-	private void formTree(Stack<Token> postfix) {
-		while (!postfix.isEmpty()) {
-			Token token = postfix.pop();
+	@SuppressWarnings("unchecked")
+	private boolean isFoldable(ExpressionNode node) {
+		boolean pure;
+		if (node.token instanceof Function) {
+			pure = ((Function<T>) node.token).pure;
+		}
+		else if (node.token instanceof Operator) {
+			pure = ((Operator<T>) node.token).pure;
+		}
+		else {
+			return false;
+		}
 
-			if (expression.root == null) {
-				ExpressionNode node = new ExpressionNode(token);
-				expression.root = node;
-			}
-			else {
-				boolean flag = formTree(expression.root, token);
+		if (!pure) {
+			return false;
+		}
 
-				if (!flag) {
-					throw new Expr4jException("Invalid expression");
-				}
+		for (ExpressionNode child : node.children) {
+			if (!(child.token instanceof Operand)) {
+				return false;
 			}
 		}
+
+		return true;
+	}
+
+	/**
+	 * Method to share the common subexpressions of the expression tree.
+	 *
+	 * @param expression The expression
+	 */
+	private void eliminateSubexpressions(Expression<T> expression) {
+		SubexpressionEliminator eliminator = new SubexpressionEliminator();
+		expression.root = eliminator.share(expression.root);
+
+		int[] counts = SubexpressionEliminator.markShared(Collections.singletonList(expression.root));
+		expression.setShared(counts[1], eliminator.getOriginalCount() - counts[0]);
 	}
 
 	/**
 	 * Method to parse an expression.<br>
-	 * This method acts as the single point of access for expression parsing.
+	 * This method acts as the single point of access for expression parsing.<br>
+	 * If an expression cache is set, an expression built earlier from the same string is returned instead,
+	 * unless the expression dictionary was modified since.
 	 *
 	 * @param expr Expression string
 	 * @return The parsed expression
 	 */
 	public Expression<T> build(String expr) {
-		try {
-			// initialize expression
-			this.expression = new Expression<T>(expressionDictionary, expressionConfig);
-
-			// tokenize the expression
-			ExpressionTokenizer<T> tokenizer = new ExpressionTokenizer<T>(expressionDictionary, expressionConfig);
-			List<Token> tokenList = tokenizer.tokenize(expr);
-
-			// form the postfix expression
-			ExpressionParser<T> parser = new ExpressionParser<T>();
-			Stack<Token> postfix = parser.parse(tokenList);
-
-			// form the tree
-			this.formTree(postfix);
-			
-			return this.expression;
+		ConcurrentCache<String, Expression<T>> cache = this.expressionCache;
+		if (cache == null || expr == null) {
+			return this.buildExpression(this.expressionDictionary, expr);
 		}
-		finally {
-			// clean up - expression evaluation can be a memory intensive process
-			this.expression = null;
+
+		ExpressionDictionary<T> dictionary = this.expressionDictionary;
+		long modificationCount = dictionary.getModificationCount();
+		if (modificationCount != cacheModificationCount) {
+			this.invalidateCache();
 		}
+
+		// an expression cached while the dictionary was being modified is stale, so check the dictionary it was built against
+		Expression<T> expression = cache.getIfPresent(expr);
+		if (expression == null || expression.getExpressionDictionary() != dictionary || expression.modificationCount != modificationCount) {
+			expression = this.buildExpression(dictionary, expr);
+			expression.modificationCount = modificationCount;
+
+			// do not cache an expression built against a dictionary that changed meanwhile
+			if (dictionary == this.expressionDictionary && modificationCount == dictionary.getModificationCount()) {
+				cache.put(expr, expression);
+			}
+		}
+
+		return expression;
+	}
+
+	/**
+	 * Method to build an expression without consulting the cache.<br>
+	 * All state of the build is local to this call.
+	 *
+	 * @param dictionary The expression dictionary
+	 * @param expr Expression string
+	 * @return The parsed expression
+	 */
+	private Expression<T> buildExpression(ExpressionDictionary<T> dictionary, String expr) {
+		// initialize expression
+		Expression<T> expression = new Expression<T>(dictionary, expressionConfig);
+
+		// tokenize the expression
+		ExpressionTokenizer<T> tokenizer = new ExpressionTokenizer<T>(dictionary, expressionConfig);
+		List<Token> tokenList = tokenizer.tokenize(expr);
+
+		// assign slots to the variables
+		expression.setVariables(this.resolveVariables(dictionary, tokenList));
+
+		// form the tree
+		ExpressionParser<T> parser = new ExpressionParser<T>();
+		expression.root = parser.parseTree(tokenList);
+
+		// fold constant subtrees
+		if (constantFolding && expression.root != null) {
+			this.foldConstants(expression);
+		}
+
+		// share common subexpressions
+		if (subexpressionElimination && expression.root != null) {
+			this.eliminateSubexpressions(expression);
+		}
+
+		// compile the tree, unless it is too deep to be evaluated recursively
+		ExpressionCompiler compiler = this.expressionCompiler;
+		if (compiler != null && ExpressionNode.height(expression.root) <= Expression.ITERATIVE_DEPTH) {
+			expression.setCompiled(compiler.compile(expression));
+		}
+
+		return expression;
 	}
 
 	/**
@@ -169,6 +310,95 @@ public class ExpressionBuilder<T> {
 		return expressionDictionary;
 	}
 
+	/**
+	 * Get the expression compiler.
+	 *
+	 * @return The expression compiler if set, null otherwise
+	 */
+	public ExpressionCompiler getExpressionCompiler() {
+		return expressionCompiler;
+	}
+
+	/**
+	 * Set the expression compiler.<br>
+	 * Expressions built after this call are compiled by the specified compiler,
+	 * except those deeper than {@link Expression#ITERATIVE_DEPTH}, which are evaluated iteratively by walking the expression tree.
+	 * If null, expressions are evaluated by walking the expression tree.
+	 *
+	 * @param expressionCompiler The expression compiler
+	 */
+	public void setExpressionCompiler(ExpressionCompiler expressionCompiler) {
+		this.expressionCompiler = expressionCompiler;
+		this.invalidateCache();
+	}
+
+	/**
+	 * Check if constant folding is enabled.
+	 *
+	 * @return true if constant folding is enabled, otherwise false
+	 */
+	public boolean isConstantFolding() {
+		return constantFolding;
+	}
+
+	/**
+	 * Enable or disable constant folding.<br>
+	 * When enabled, which is the default, every pure operator or function whose operands are all operands or constants
+	 * is evaluated when the expression is built, and replaced by its result.
+	 * The string representation of the expression then shows the result instead of the folded subtree.
+	 * Operators and functions that are not declared pure, such as random number generators, are never folded.
+	 *
+	 * @param constantFolding true to enable constant folding, false to disable it
+	 */
+	public void setConstantFolding(boolean constantFolding) {
+		this.constantFolding = constantFolding;
+		this.invalidateCache();
+	}
+
+	/**
+	 * Check if common subexpression elimination is enabled.
+	 *
+	 * @return true if common subexpression elimination is enabled, otherwise false
+	 */
+	public boolean isSubexpressionElimination() {
+		return subexpressionElimination;
+	}
+
+	/**
+	 * Enable or disable common subexpression elimination.<br>
+	 * When enabled, which is the default, structurally equal subexpressions made of pure operators and functions
+	 * are replaced by a single shared node, whose value is computed at most once per evaluation.
+	 * The number of nodes eliminated is reported by {@link Expression#getEliminatedCount()}.
+	 *
+	 * @param subexpressionElimination true to enable common subexpression elimination, false to disable it
+	 */
+	public void setSubexpressionElimination(boolean subexpressionElimination) {
+		this.subexpressionElimination = subexpressionElimination;
+		this.invalidateCache();
+	}
+
+	/**
+	 * Get the expression cache.
+	 *
+	 * @return The expression cache if set, null otherwise
+	 */
+	public ConcurrentCache<String, Expression<T>> getExpressionCache() {
+		return expressionCache;
+	}
+
+	/**
+	 * Set the expression cache.<br>
+	 * Built expressions are cached by expression string, and the cache is cleared whenever the expression dictionary is modified.
+	 * Cached expressions are shared by all callers of {@link #build(String)}, so they must not be modified.
+	 * If null, every call to {@link #build(String)} builds a new expression.
+	 *
+	 * @param expressionCache The expression cache
+	 */
+	public void setExpressionCache(ConcurrentCache<String, Expression<T>> expressionCache) {
+		this.expressionCache = expressionCache;
+		this.invalidateCache();
+	}
+
 	/**
 	 * Get the expression configuration.
 	 *
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+/**
+ * The <code>ExpressionCompiler</code> interface compiles the tree of an expression into a form that is faster to evaluate.<br>
+ * A compiler can be set on an {@link ExpressionBuilder}, which then compiles every expression it builds.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public interface ExpressionCompiler {
+
+    /**
+     * Compile an expression.
+     *
+     * @param expression The expression
+     * @param <T> The type of operand
+     * @return The compiled expression
+     */
+    <T> CompiledExpression<T> compile(Expression<T> expression);
+
+}
@@ -30,6 +30,11 @@ import java.util.List;
  */
 public abstract class ExpressionConfig<T> {
 
+    /**
+     * Cached operand scanner.
+     */
+    private volatile OperandScanner operandScanner;
+
     /**
      * No-Argument Constructor.
      */
@@ -65,4 +70,30 @@ public abstract class ExpressionConfig<T> {
         return list;
     }
 
+    /**
+     * Method to define the scanner to identify operands.<br>
+     * By default, the scanner matches the patterns returned by {@link #getOperandPattern()}.
+     * Override this method to recognize operands without regular expressions, for example with {@link OperandScanner#NUMBER}.
+     * This method is called once, when the first expression is tokenized.
+     *
+     * @return The scanner to identify operands
+     */
+    protected OperandScanner getOperandScanner() {
+        return OperandScanner.ofPatterns(getOperandPattern());
+    }
+
+    /**
+     * Get the scanner to identify operands, creating it on first use.
+     *
+     * @return The scanner to identify operands
+     */
+    OperandScanner operandScanner() {
+        OperandScanner scanner = operandScanner;
+        if (scanner == null) {
+            scanner = getOperandScanner();
+            operandScanner = scanner;
+        }
+        return scanner;
+    }
+
 }
@@ -23,11 +23,10 @@ import in.pratanumandal.expr4j.token.Operator;
 import in.pratanumandal.expr4j.token.OperatorType;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 /**
  * The <code>ExpressionDictionary&lt;T&gt;</code> class stores all operators, functions and constants of a specified type.
@@ -54,15 +53,56 @@ public class ExpressionDictionary<T> {
     /** Map of constants */
     protected Map<String, T> constants;
 
+    /** Trie of the labels of all executables (operators and functions) */
+    private final ExecutableTrie executables;
+
+    /** Number of modifications made to this dictionary */
+    private volatile long modificationCount;
+
     /**
      * No-Argument Constructor.
      */
     public ExpressionDictionary() {
-        this.prefixMap = new TreeMap<>();
-        this.postfixMap = new TreeMap<>();
-        this.infixMap = new TreeMap<>();
-        this.functionMap = new TreeMap<>();
-        this.constants = new TreeMap<>();
+        this.prefixMap = new HashMap<>();
+        this.postfixMap = new HashMap<>();
+        this.infixMap = new HashMap<>();
+        this.functionMap = new HashMap<>();
+        this.constants = new HashMap<>();
+        this.executables = new ExecutableTrie();
+    }
+
+    /**
+     * Get the number of modifications made to this dictionary.<br>
+     * The count changes whenever an operator, function or constant is added or removed,
+     * so structures derived from the dictionary can detect when they are stale.
+     *
+     * @return The modification count
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Record a modification of this dictionary.
+     */
+    private void modified() {
+        modificationCount++;
+    }
+
+    /**
+     * Update the trie after an executable with the specified label was added or removed.
+     *
+     * @param label The label of the executable
+     */
+    private void updateExecutable(String label) {
+        if (prefixMap.containsKey(label) || postfixMap.containsKey(label) ||
+                infixMap.containsKey(label) || functionMap.containsKey(label)) {
+            executables.add(label);
+        }
+        else {
+            executables.remove(label);
+        }
+        modified();
     }
 
     /**
@@ -80,6 +120,7 @@ public class ExpressionDictionary<T> {
         else {
             infixMap.put(operator.label, operator);
         }
+        updateExecutable(operator.label);
     }
 
     /**
@@ -113,6 +154,7 @@ public class ExpressionDictionary<T> {
         else {
             infixMap.remove(label);
         }
+        updateExecutable(label);
     }
 
     /**
@@ -195,6 +237,7 @@ public class ExpressionDictionary<T> {
      */
     public void addFunction(Function<T> function) {
         functionMap.put(function.label, function);
+        updateExecutable(function.label);
     }
 
     /**
@@ -204,6 +247,7 @@ public class ExpressionDictionary<T> {
      */
     public void removeFunction(String label) {
         functionMap.remove(label);
+        updateExecutable(label);
     }
 
     /**
@@ -245,6 +289,7 @@ public class ExpressionDictionary<T> {
      */
     public void addConstant(String label, T value) {
         constants.put(label, value);
+        modified();
     }
 
     /**
@@ -254,7 +299,9 @@ public class ExpressionDictionary<T> {
      * @return Constant for the specified label if present, else null
      */
     public T removeConstant(String label) {
-        return constants.remove(label);
+        T value = constants.remove(label);
+        modified();
+        return value;
     }
 
     /**
@@ -271,17 +318,14 @@ public class ExpressionDictionary<T> {
     }
 
     /**
-     * Get list of labels of all executables (operators and functions).
+     * Find the longest label of an executable (operator or function) starting at an index of an expression.
      *
-     * @return The list of labels
+     * @param expression The expression
+     * @param index The index
+     * @return The label if found, null otherwise
      */
-    Set<String> getExecutables() {
-        Set<String> executables = new TreeSet<>();
-        executables.addAll(prefixMap.keySet());
-        executables.addAll(postfixMap.keySet());
-        executables.addAll(infixMap.keySet());
-        executables.addAll(functionMap.keySet());
-        return executables;
+    String matchExecutable(CharSequence expression, int index) {
+        return executables.longestMatch(expression, index);
     }
 
 }
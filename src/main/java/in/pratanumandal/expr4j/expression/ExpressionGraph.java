@@ -0,0 +1,506 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The <code>ExpressionGraph&lt;T&gt;</code> class evaluates named expressions, called cells, which refer to each other by name,
+ * such as the formulas of a spreadsheet.<br><br>
+ *
+ * A variable of a cell whose label is the name of another cell refers to the value of that cell;
+ * every other variable is an input, set with {@link #set(String, Object)}.
+ * Cycles of references are reported when the graph is created.
+ * Cells are recalculated in topological order, so every cell is evaluated after the cells it refers to,
+ * and cells which do not depend on each other can be recalculated in parallel on an {@link Executor}.
+ * Changing an input marks only the cells downstream of it as dirty, and recalculation computes only dirty cells.<br><br>
+ *
+ * A cell which throws an exception holds the exception instead of a value.
+ * The exception is rethrown by {@link #get(String)} and by the cells which read the value of that cell.<br><br>
+ *
+ * The graph is not thread safe, although recalculation itself may use several threads.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+public class ExpressionGraph<T> {
+
+    /**
+     * Names of the cells in topological order.
+     */
+    private final List<String> order;
+
+    /**
+     * Map of cell names to their index in topological order.
+     */
+    private final Map<String, Integer> indices;
+
+    /**
+     * Expressions of the cells.
+     */
+    private final List<Expression<T>> expressions;
+
+    /**
+     * Bindings of the variables of each cell.
+     */
+    private final List<Bindings<T>> bindings;
+
+    /**
+     * Index of the cell each variable of a cell refers to, or -1 if the variable is an input.
+     */
+    private final int[][] references;
+
+    /**
+     * Indices of the cells which refer to each cell.
+     */
+    private final int[][] dependents;
+
+    /**
+     * Indices of the cells which read each input.
+     */
+    private final Map<String, int[]> readers;
+
+    /**
+     * Values of the inputs.
+     */
+    private final Map<String, T> inputs;
+
+    /**
+     * Values of the cells.
+     */
+    private final Object[] values;
+
+    /**
+     * Exceptions thrown by the cells, if any.
+     */
+    private final RuntimeException[] errors;
+
+    /**
+     * Flags to indicate if each cell needs to be recalculated.
+     */
+    private final boolean[] dirty;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param cells Map of cell names to expressions
+     */
+    public ExpressionGraph(Map<String, Expression<T>> cells) {
+        List<String> names = new ArrayList<>(cells.keySet());
+        int count = names.size();
+
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            positions.put(names.get(i), i);
+        }
+
+        // find the cells each cell refers to
+        List<List<Integer>> referenced = new ArrayList<>(count);
+        List<List<Integer>> referencing = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            referencing.add(new ArrayList<>());
+        }
+        for (int i = 0; i < count; i++) {
+            Expression<T> expression = cells.get(names.get(i));
+            if (expression == null || expression.root == null) {
+                throw new Expr4jException("Invalid expression for cell: " + names.get(i));
+            }
+
+            Set<Integer> targets = new LinkedHashSet<>();
+            for (String label : expression.getVariables()) {
+                Integer target = positions.get(label);
+                if (target != null) targets.add(target);
+            }
+            referenced.add(new ArrayList<>(targets));
+            for (int target : targets) {
+                referencing.get(target).add(i);
+            }
+        }
+
+        // sort the cells topologically
+        int[] pending = new int[count];
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < count; i++) {
+            pending[i] = referenced.get(i).size();
+            if (pending[i] == 0) ready.add(i);
+        }
+
+        int[] sorted = new int[count];
+        int size = 0;
+        while (!ready.isEmpty()) {
+            int cell = ready.poll();
+            sorted[size++] = cell;
+            for (int dependent : referencing.get(cell)) {
+                if (--pending[dependent] == 0) ready.add(dependent);
+            }
+        }
+
+        if (size < count) {
+            throw new Expr4jException("Cycle detected: " + String.join(" -> ", findCycle(names, referenced, pending)));
+        }
+
+        // lay out the cells in topological order
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranks[sorted[i]] = i;
+        }
+
+        this.order = new ArrayList<>(count);
+        this.indices = new HashMap<>();
+        this.expressions = new ArrayList<>(count);
+        this.bindings = new ArrayList<>(count);
+        this.references = new int[count][];
+        this.dependents = new int[count][];
+        this.inputs = new HashMap<>();
+        this.values = new Object[count];
+        this.errors = new RuntimeException[count];
+        this.dirty = new boolean[count];
+
+        Map<String, List<Integer>> readers = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = names.get(sorted[i]);
+            Expression<T> expression = cells.get(name);
+
+            order.add(name);
+            indices.put(name, i);
+            expressions.add(expression);
+            bindings.add(expression.bindings().setResolver(this::unresolved));
+
+            List<String> variables = expression.getVariables();
+            references[i] = new int[variables.size()];
+            for (int slot = 0; slot < variables.size(); slot++) {
+                Integer target = positions.get(variables.get(slot));
+                references[i][slot] = target == null ? -1 : ranks[target];
+                if (target == null) {
+                    readers.computeIfAbsent(variables.get(slot), label -> new ArrayList<>()).add(i);
+                }
+            }
+
+            List<Integer> referencingCells = referencing.get(sorted[i]);
+            dependents[i] = new int[referencingCells.size()];
+            for (int j = 0; j < dependents[i].length; j++) {
+                dependents[i][j] = ranks[referencingCells.get(j)];
+            }
+
+            dirty[i] = true;
+        }
+
+        this.readers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : readers.entrySet()) {
+            this.readers.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Find a cycle among the cells left over by the topological sort, all of which are on or downstream of a cycle.
+     *
+     * @param names Names of the cells
+     * @param referenced Cells each cell refers to
+     * @param pending Number of references of each cell not yet sorted
+     * @return Names of the cells forming the cycle, each referring to the next, starting and ending with the same cell
+     */
+    private static List<String> findCycle(List<String> names, List<List<Integer>> referenced, int[] pending) {
+        int cell = 0;
+        while (pending[cell] == 0) cell++;
+
+        // follow unsorted references until a cell repeats
+        Map<Integer, Integer> visited = new LinkedHashMap<>();
+        while (!visited.containsKey(cell)) {
+            visited.put(cell, visited.size());
+            for (int target : referenced.get(cell)) {
+                if (pending[target] > 0) {
+                    cell = target;
+                    break;
+                }
+            }
+        }
+
+        List<String> cycle = new ArrayList<>();
+        int start = visited.get(cell);
+        for (int visitedCell : visited.keySet()) {
+            if (visited.get(visitedCell) >= start) cycle.add(names.get(visitedCell));
+        }
+        cycle.add(cycle.get(0));
+        return cycle;
+    }
+
+    /**
+     * Report a variable of a cell which has no value, rethrowing the exception of the cell it refers to if any.
+     *
+     * @param label The label of the variable
+     * @return Never returns normally
+     */
+    private T unresolved(String label) {
+        Integer index = indices.get(label);
+        if (index != null && errors[index] != null) {
+            throw errors[index];
+        }
+        throw new Expr4jException("Variable not found: " + label);
+    }
+
+    /**
+     * Get the names of the cells in topological order, every cell following the cells it refers to.
+     *
+     * @return The names of the cells
+     */
+    public List<String> getCells() {
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * Get the labels of the inputs, that is, the variables which do not refer to a cell.
+     *
+     * @return The labels of the inputs
+     */
+    public Set<String> getInputs() {
+        return Collections.unmodifiableSet(readers.keySet());
+    }
+
+    /**
+     * Set the value of an input, marking the cells downstream of it as dirty if the value changed.<br>
+     * Labels which are not inputs of any cell are ignored.
+     *
+     * @param label The label of the input
+     * @param value The value
+     * @return This graph
+     */
+    public ExpressionGraph<T> set(String label, T value) {
+        if (indices.containsKey(label)) {
+            throw new Expr4jException("Cannot set the value of cell: " + label);
+        }
+
+        int[] cells = readers.get(label);
+        if (cells == null) {
+            return this;
+        }
+
+        if (!inputs.containsKey(label) || !Objects.equals(inputs.get(label), value)) {
+            inputs.put(label, value);
+            markDirty(cells);
+        }
+        return this;
+    }
+
+    /**
+     * Set the values of the inputs present in a map.<br>
+     * Labels which are not inputs of any cell are ignored.
+     *
+     * @param variables Map of inputs
+     * @return This graph
+     */
+    public ExpressionGraph<T> setAll(Map<String, T> variables) {
+        for (Map.Entry<String, T> entry : variables.entrySet()) {
+            set(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * Mark cells and all cells downstream of them as dirty.
+     *
+     * @param cells Indices of the cells
+     */
+    private void markDirty(int[] cells) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int cell : cells) {
+            stack.push(cell);
+        }
+
+        while (!stack.isEmpty()) {
+            int cell = stack.pop();
+            if (!dirty[cell]) {
+                dirty[cell] = true;
+                for (int dependent : dependents[cell]) {
+                    stack.push(dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a cell needs to be recalculated.
+     *
+     * @param cell The name of the cell
+     * @return True if dirty, false otherwise
+     */
+    public boolean isDirty(String cell) {
+        return dirty[index(cell)];
+    }
+
+    /**
+     * Get the value of a cell as of the last recalculation, or rethrow the exception it threw.
+     *
+     * @param cell The name of the cell
+     * @return The value
+     */
+    @SuppressWarnings("unchecked")
+    public T get(String cell) {
+        int index = index(cell);
+        if (dirty[index]) {
+            throw new Expr4jException("Cell has not been recalculated: " + cell);
+        }
+        if (errors[index] != null) {
+            throw errors[index];
+        }
+        return (T) values[index];
+    }
+
+    /**
+     * Get the index of a cell.
+     *
+     * @param cell The name of the cell
+     * @return The index
+     */
+    private int index(String cell) {
+        Integer index = indices.get(cell);
+        if (index == null) {
+            throw new Expr4jException("Cell not found: " + cell);
+        }
+        return index;
+    }
+
+    /**
+     * Recalculate the dirty cells one after another in topological order.
+     *
+     * @return The number of cells recalculated
+     */
+    public int recalculate() {
+        EvaluationContext context = EvaluationContext.current();
+
+        int count = 0;
+        for (int cell = 0; cell < dirty.length; cell++) {
+            if (dirty[cell]) {
+                calculate(cell, context);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Recalculate the dirty cells on an executor.<br>
+     * Every cell is recalculated as soon as the dirty cells it refers to are,
+     * so cells which do not depend on each other are recalculated in parallel.
+     * This method returns once all dirty cells are recalculated.
+     *
+     * @param executor Executor to recalculate the cells on
+     * @return The number of cells recalculated
+     */
+    public int recalculate(Executor executor) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[dirty.length];
+        List<CompletableFuture<?>> all = new ArrayList<>();
+
+        for (int cell = 0; cell < dirty.length; cell++) {
+            if (!dirty[cell]) {
+                continue;
+            }
+
+            List<CompletableFuture<?>> dependencies = new ArrayList<>();
+            for (int target : references[cell]) {
+                if (target >= 0 && futures[target] != null) {
+                    dependencies.add(futures[target]);
+                }
+            }
+
+            int index = cell;
+            Runnable task = () -> calculate(index, EvaluationContext.current());
+            futures[cell] = dependencies.isEmpty() ? CompletableFuture.runAsync(task, executor)
+                    : CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0])).thenRunAsync(task, executor);
+            all.add(futures[cell]);
+        }
+
+        try {
+            CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).join();
+        }
+        catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return all.size();
+    }
+
+    /**
+     * Calculate a cell from the values of the cells it refers to and of its inputs.
+     *
+     * @param cell The index of the cell
+     * @param context Context used to recycle the parameters of operations
+     */
+    private void calculate(int cell, EvaluationContext context) {
+        Bindings<T> bindings = this.bindings.get(cell);
+        List<String> variables = bindings.variables;
+
+        for (int slot = 0; slot < references[cell].length; slot++) {
+            int target = references[cell][slot];
+            if (target >= 0) {
+                if (errors[target] == null) {
+                    bindings.set(slot, valueOf(target));
+                }
+                else {
+                    bindings.unset(slot);
+                }
+            }
+            else {
+                String label = variables.get(slot);
+                if (inputs.containsKey(label)) {
+                    bindings.set(slot, inputs.get(label));
+                }
+                else {
+                    bindings.unset(slot);
+                }
+            }
+        }
+
+        try {
+            values[cell] = expressions.get(cell).evaluate(bindings, context);
+            errors[cell] = null;
+        }
+        catch (RuntimeException e) {
+            values[cell] = null;
+            errors[cell] = e;
+        }
+        dirty[cell] = false;
+    }
+
+    /**
+     * Get the value of a cell.
+     *
+     * @param cell The index of the cell
+     * @return The value
+     */
+    @SuppressWarnings("unchecked")
+    private T valueOf(int cell) {
+        return (T) values[cell];
+    }
+
+}
@@ -22,6 +22,7 @@ import in.pratanumandal.expr4j.token.Operator;
 import in.pratanumandal.expr4j.token.Token;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -33,6 +34,11 @@ import java.util.List;
  */
 public class ExpressionNode {
 
+    /**
+     * Marker for nodes which are not shared.
+     */
+    public static final int NOT_SHARED = -1;
+
     /**
      * Children of this node.
      */
@@ -44,6 +50,12 @@ public class ExpressionNode {
      */
     public final Token token;
 
+    /**
+     * Index of the value of this node among the shared subexpressions of its expression, or {@link #NOT_SHARED}.<br>
+     * The value of a shared node is computed at most once per evaluation.
+     */
+    int shared = NOT_SHARED;
+
     /**
      * Parameterized constructor.
      *
@@ -59,4 +71,115 @@ public class ExpressionNode {
         }
     }
 
+    /**
+     * Get the index of the value of this node among the shared subexpressions of its expression.
+     *
+     * @return The index, or {@link #NOT_SHARED} if this node is not shared
+     */
+    public int getShared() {
+        return shared;
+    }
+
+    /**
+     * Compute the height of the tree rooted at a node without recursion.
+     *
+     * @param root The root of the tree
+     * @return The height of the tree, or 0 if the root is null
+     */
+    static int height(ExpressionNode root) {
+        if (root == null) {
+            return 0;
+        }
+
+        ExpressionNode[] nodes = new ExpressionNode[16];
+        int[] indices = new int[16];
+        int top = 0;
+        int height = 0;
+
+        nodes[0] = root;
+        indices[0] = 0;
+
+        while (top >= 0) {
+            ExpressionNode node = nodes[top];
+            int index = indices[top];
+
+            if (node.children != null && index < node.children.size()) {
+                indices[top]++;
+
+                if (++top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    indices = Arrays.copyOf(indices, top * 2);
+                }
+                nodes[top] = node.children.get(index);
+                indices[top] = 0;
+
+                height = Math.max(height, top + 1);
+            }
+            else {
+                nodes[top--] = null;
+            }
+        }
+
+        return Math.max(height, 1);
+    }
+
+    /**
+     * Visit the nodes of the tree rooted at a node in postorder without recursion.<br>
+     * A node is visited after all of its children, and the visitor may replace the node in its parent.
+     *
+     * @param root The root of the tree
+     * @param visitor The visitor
+     */
+    static void postorder(ExpressionNode root, Visitor visitor) {
+        ExpressionNode[] nodes = new ExpressionNode[16];
+        int[] indices = new int[16];
+        int top = 0;
+
+        nodes[0] = root;
+        indices[0] = 0;
+
+        while (top >= 0) {
+            ExpressionNode node = nodes[top];
+            int index = indices[top];
+
+            if (node.children != null && index < node.children.size()) {
+                indices[top]++;
+
+                if (++top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    indices = Arrays.copyOf(indices, top * 2);
+                }
+                nodes[top] = node.children.get(index);
+                indices[top] = 0;
+            }
+            else {
+                nodes[top--] = null;
+
+                if (top >= 0) {
+                    visitor.visit(node, nodes[top], indices[top] - 1);
+                }
+                else {
+                    visitor.visit(node, null, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * The <code>Visitor</code> interface visits the nodes of an expression tree.
+     */
+    @FunctionalInterface
+    interface Visitor {
+
+        /**
+         * Visit a node.
+         *
+         * @param node The node
+         * @param parent The parent of the node, or null if the node is the root
+         * @param index The index of the node among the children of its parent, or -1 if the node is the root
+         */
+        void visit(ExpressionNode node, ExpressionNode parent, int index);
+
+    }
+
 }
@@ -17,10 +17,11 @@
 
 package in.pratanumandal.expr4j.expression;
 
-import java.util.Map;
-
 /**
- * The <code>ExpressionParameter&lt;T&gt;</code> class represents a parameter of an operation.<br><br>
+ * The <code>ExpressionParameter&lt;T&gt;</code> class represents a parameter of an operation.<br>
+ * The parameter is evaluated lazily, at most once, when its value is first requested.<br><br>
+ *
+ * Parameters created by an {@link EvaluationContext} are recycled once the operation they were passed to returns.
  *
  * @author Pratanu Mandal
  * @since 1.0
@@ -29,36 +30,72 @@ import java.util.Map;
 public class ExpressionParameter<T> {
 
     /**
-     * Expression to which this parameter belongs.
+     * Evaluator of the target of this parameter.
+     */
+    private ParameterEvaluator<T> evaluator;
+
+    /**
+     * Target of this parameter, such as a node of the expression.
      */
-    private Expression<T> expression;
+    private Object target;
 
     /**
-     * Node of the expression related to this parameter.
+     * Bindings of variables.
      */
-    private ExpressionNode node;
+    private Bindings<T> bindings;
 
     /**
-     * Map of variables.
+     * Context used to evaluate this parameter.
      */
-    private Map<String, T> variables;
+    private EvaluationContext context;
 
     /**
      * Result of evaluating this parameter.
      */
     private T result;
 
+    /**
+     * Flag to indicate if this parameter has been evaluated.
+     */
+    private boolean evaluated;
+
     /**
      * Parameterized constructor.
      *
      * @param expression The expression
      * @param node The node
-     * @param variables Map of variables
+     * @param bindings Bindings of variables
+     */
+    public ExpressionParameter(Expression<T> expression, ExpressionNode node, Bindings<T> bindings) {
+        this(expression.nodeEvaluator, node, bindings);
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param evaluator Evaluator of the target
+     * @param target The target
+     * @param bindings Bindings of variables
+     */
+    public ExpressionParameter(ParameterEvaluator<T> evaluator, Object target, Bindings<T> bindings) {
+        this.reset(evaluator, target, bindings, null);
+    }
+
+    /**
+     * Reset this parameter so that it can be reused.
+     *
+     * @param evaluator Evaluator of the target
+     * @param target The target
+     * @param bindings Bindings of variables
+     * @param context Context used to evaluate this parameter
      */
-    public ExpressionParameter(Expression<T> expression, ExpressionNode node, Map<String, T> variables) {
-        this.expression = expression;
-        this.node = node;
-        this.variables = variables;
+    void reset(ParameterEvaluator<T> evaluator, Object target, Bindings<T> bindings, EvaluationContext context) {
+        this.evaluator = evaluator;
+        this.target = target;
+        this.bindings = bindings;
+        this.context = context;
+        this.result = null;
+        this.evaluated = false;
     }
 
     /**
@@ -67,8 +104,10 @@ public class ExpressionParameter<T> {
      * @return The evaluated result
      */
     public T value() {
-        if (this.result == null) {
-            this.result = this.expression.evaluate(this.node, this.variables).value;
+        if (!this.evaluated) {
+            EvaluationContext context = this.context != null ? this.context : EvaluationContext.current();
+            this.result = this.evaluator.evaluate(this.target, this.bindings, context);
+            this.evaluated = true;
         }
         return this.result;
     }
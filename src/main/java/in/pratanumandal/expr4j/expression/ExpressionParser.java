@@ -26,12 +26,17 @@ import in.pratanumandal.expr4j.token.Separator;
 import in.pratanumandal.expr4j.token.Token;
 import in.pratanumandal.expr4j.token.Variable;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Stack;
 
 /**
  * The <code>ExpressionParser&lt;T&gt;</code> class parses expressions independent of the type of operand.<br>
- * This class parses the tokenized expression to generate a postfix (RPN) expression.<br><br>
+ * This class parses the tokenized expression to generate a postfix (RPN) expression, or the expression tree directly.<br>
+ * The tree is built during the shunting-yard pass itself: every token emitted to the output takes its operands from a stack of nodes,
+ * so building costs time linear in the number of tokens.<br><br>
  * 
  * @author Pratanu Mandal
  * @since 1.0
@@ -41,19 +46,24 @@ import java.util.Stack;
 public class ExpressionParser<T> {
 	
 	/**
-	 * Stack to hold the postfix (RPN) expression.
+	 * List to hold the postfix (RPN) expression, if requested.
 	 */
-	private Stack<Token> postfix;
+	private List<Token> postfix;
+
+	/**
+	 * Stack to hold the nodes of the expression tree, if requested.
+	 */
+	private List<ExpressionNode> nodeStack;
 	
 	/**
 	 * Stack to hold the operators.
 	 */
-	private Stack<Token> operatorStack;
+	private Deque<Token> operatorStack;
 	
 	/**
 	 * Stack to hold the count of function parameters.
 	 */
-	private Stack<Integer> functionStack;
+	private Deque<Integer> functionStack;
 	
 	/**
 	 * No-Argument Constructor.
@@ -68,10 +78,49 @@ public class ExpressionParser<T> {
 	 * @return The postfix expression
 	 */
 	public Stack<Token> parse(List<Token> tokenList) {
+		// emit straight into the returned stack
+		Stack<Token> stack = new Stack<>();
+		postfix = stack;
+		nodeStack = null;
+
+		this.shuntingYard(tokenList);
+
+		postfix = null;
+
+		return stack;
+	}
+
+	/**
+	 * Method to create the expression tree from the infix expression.
+	 *
+	 * @param tokenList The token list
+	 * @return The root of the expression tree, or null if the expression is empty
+	 */
+	public ExpressionNode parseTree(List<Token> tokenList) {
+		postfix = null;
+		nodeStack = new ArrayList<>();
+
+		this.shuntingYard(tokenList);
+
+		if (nodeStack.size() > 1) {
+			throw new Expr4jException("Invalid expression");
+		}
+
+		ExpressionNode root = nodeStack.isEmpty() ? null : nodeStack.get(0);
+		nodeStack = null;
+
+		return root;
+	}
+
+	/**
+	 * Method to run the shunting-yard algorithm over the infix expression.
+	 *
+	 * @param tokenList The token list
+	 */
+	private void shuntingYard(List<Token> tokenList) {
 		// initialize members
-		postfix = new Stack<>();
-		operatorStack = new Stack<>();
-		functionStack = new Stack<>();
+		operatorStack = new ArrayDeque<>();
+		functionStack = new ArrayDeque<>();
 
 		boolean probableZeroFunction = false;
 
@@ -112,7 +161,7 @@ public class ExpressionParser<T> {
 					throwIfOpenBracketOrComma(lastToken);
 
 					while (!operatorStack.isEmpty() && !(operatorStack.peek() instanceof Function)) {
-						postfix.push(operatorStack.pop());
+						emit(operatorStack.pop());
 					}
 
 					if (functionStack.isEmpty()) {
@@ -162,7 +211,7 @@ public class ExpressionParser<T> {
 
 			// numbers and variables
 			else if (token instanceof Operand || token instanceof Variable) {
-				postfix.push(token);
+				emit(token);
 				probableZeroFunction = false;
 			}
 
@@ -180,10 +229,47 @@ public class ExpressionParser<T> {
 			if (token instanceof Function || token instanceof Separator) {
 				throw new Expr4jException("Unmatched number of parenthesis");
 			}
-			postfix.push(operatorStack.pop());
+			emit(operatorStack.pop());
 		}
+	}
+
+	/**
+	 * Emit a token to the output.<br>
+	 * When building the tree, the node of an operator or function takes its children from the top of the node stack.
+	 *
+	 * @param token The token
+	 */
+	@SuppressWarnings("unchecked")
+	private void emit(Token token) {
+		if (postfix != null) {
+			postfix.add(token);
+		}
+
+		if (nodeStack != null) {
+			ExpressionNode node = new ExpressionNode(token);
+
+			int operandCount = 0;
+			if (token instanceof Function) {
+				operandCount = ((Function<T>) token).parameters;
+			}
+			else if (token instanceof Operator) {
+				Operator<T> operator = (Operator<T>) token;
+				operandCount = (operator.type == OperatorType.INFIX || operator.type == OperatorType.INFIX_RTL) ? 2 : 1;
+			}
 
-		return postfix;
+			if (operandCount > 0) {
+				int size = nodeStack.size();
+				if (size < operandCount) {
+					throw new Expr4jException("Invalid expression");
+				}
+
+				List<ExpressionNode> operands = nodeStack.subList(size - operandCount, size);
+				node.children.addAll(operands);
+				operands.clear();
+			}
+
+			nodeStack.add(node);
+		}
 	}
 
 	/**
@@ -196,11 +282,11 @@ public class ExpressionParser<T> {
 			while (!operatorStack.isEmpty() &&
 					(operatorStack.peek() instanceof Operator &&
 							operator.compareTo((Operator<T>) operatorStack.peek()) > 0)) {
-				postfix.push(operatorStack.pop());
+				emit(operatorStack.pop());
 			}
 		}
 		if (operator.type == OperatorType.POSTFIX) {
-			postfix.push(operator);
+			emit(operator);
 		}
 		else {
 			operatorStack.push(operator);
@@ -227,13 +313,13 @@ public class ExpressionParser<T> {
 				int actualParameters = functionStack.pop();
 
 				if (function.parameters == Function.VARIABLE_PARAMETERS) {
-					function = new Function<T>(function.label, actualParameters, function.operation);
+					function = new Function<T>(function.label, actualParameters, function.pure, function.operation);
 				}
 				else if (function.parameters != actualParameters) {
 					throw new Expr4jException("Incorrect number of parameters for function: " + function.label);
 				}
 
-				postfix.push(function);
+				emit(function);
 
 				flag = true;
 				break;
@@ -246,7 +332,7 @@ public class ExpressionParser<T> {
 				if (!operatorStack.isEmpty() && operatorStack.peek() instanceof Operator) {
 					Operator<T> operator = (Operator<T>) operatorStack.peek();
 					if (operator.type == OperatorType.PREFIX) {
-						postfix.push(operatorStack.pop());
+						emit(operatorStack.pop());
 					}
 				}
 
@@ -255,7 +341,7 @@ public class ExpressionParser<T> {
 			}
 
 			// evaluate top of stack
-			postfix.push(operatorStack.pop());
+			emit(operatorStack.pop());
 		}
 
 		if (!flag) {
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.token.Variable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>ExpressionSet&lt;T&gt;</code> class evaluates a group of expressions together against the same variables.<br>
+ * The trees of the expressions are merged into a single directed acyclic graph, sharing every subexpression made of pure operations
+ * that occurs in more than one place, whether within an expression or across expressions.
+ * Evaluating the set computes each shared subexpression at most once and returns the results of all expressions.<br><br>
+ *
+ * The expressions are copied when the set is created, so they remain usable on their own.
+ * The set always evaluates the expression trees, even if the expressions were compiled.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+public class ExpressionSet<T> {
+
+    /**
+     * Expression holding the union of the variables and the shared subexpressions, used to evaluate the roots.
+     */
+    private final Expression<T> union;
+
+    /**
+     * Roots of the merged expressions, in the order of the expressions.
+     */
+    private final List<ExpressionNode> roots;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param expressions The expressions
+     */
+    public ExpressionSet(List<Expression<T>> expressions) {
+        if (expressions.isEmpty()) {
+            throw new Expr4jException("Expression set cannot be empty");
+        }
+
+        // union of the variables, in the order first seen
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        for (Expression<T> expression : expressions) {
+            if (expression.root == null) {
+                throw new Expr4jException("Invalid expression");
+            }
+            for (String label : expression.getVariables()) {
+                slots.putIfAbsent(label, slots.size());
+            }
+        }
+
+        Expression<T> first = expressions.get(0);
+        this.union = new Expression<>(first.getExpressionDictionary(), first.getExpressionConfig());
+        this.union.setVariables(new ArrayList<>(slots.keySet()));
+
+        // copy the trees onto the union of the variables and share their common subexpressions
+        SubexpressionEliminator eliminator = new SubexpressionEliminator();
+        List<ExpressionNode> roots = new ArrayList<>(expressions.size());
+        for (Expression<T> expression : expressions) {
+            roots.add(eliminator.share(copy(expression.root, slots)));
+        }
+
+        int[] counts = SubexpressionEliminator.markShared(roots);
+        this.union.setShared(counts[1], eliminator.getOriginalCount() - counts[0]);
+
+        this.roots = Collections.unmodifiableList(roots);
+    }
+
+    /**
+     * Copy a tree, assigning the variables their slots in the union of the variables.
+     *
+     * @param root The root of the tree
+     * @param slots Map of variable labels to slots
+     * @return The root of the copy
+     */
+    private static ExpressionNode copy(ExpressionNode root, Map<String, Integer> slots) {
+        Map<ExpressionNode, ExpressionNode> copies = new IdentityHashMap<>();
+
+        ExpressionNode.postorder(root, (node, parent, index) -> {
+            if (copies.containsKey(node)) {
+                return;
+            }
+
+            ExpressionNode copy;
+            if (node.token instanceof Variable) {
+                String label = ((Variable) node.token).label;
+                copy = new ExpressionNode(new Variable(label, slots.get(label)));
+            }
+            else {
+                copy = new ExpressionNode(node.token);
+                if (node.children != null) {
+                    for (ExpressionNode child : node.children) {
+                        copy.children.add(copies.get(child));
+                    }
+                }
+            }
+
+            copies.put(node, copy);
+        });
+
+        return copies.get(root);
+    }
+
+    /**
+     * Get the number of expressions in this set.
+     *
+     * @return The number of expressions
+     */
+    public int size() {
+        return roots.size();
+    }
+
+    /**
+     * Get the labels of the variables of all expressions in the order of their slots.
+     *
+     * @return The slot layout of this set
+     */
+    public List<String> getVariables() {
+        return union.getVariables();
+    }
+
+    /**
+     * Get the slot of a variable.
+     *
+     * @param label The label of the variable
+     * @return The slot if found, -1 otherwise
+     */
+    public int getSlot(String label) {
+        return union.getSlot(label);
+    }
+
+    /**
+     * Get the number of subexpressions shared within or across the expressions.
+     *
+     * @return The number of shared subexpressions
+     */
+    public int getSharedCount() {
+        return union.getSharedCount();
+    }
+
+    /**
+     * Get the number of nodes eliminated by merging the expressions.
+     *
+     * @return The number of nodes eliminated
+     */
+    public int getEliminatedCount() {
+        return union.getEliminatedCount();
+    }
+
+    /**
+     * Create empty bindings for the variables of all expressions.
+     *
+     * @return The bindings
+     */
+    public Bindings<T> bindings() {
+        return union.bindings();
+    }
+
+    /**
+     * Evaluate all expressions against bindings of variables.
+     *
+     * @param bindings Bindings of variables created by {@link #bindings()}
+     * @param context Context used to recycle the parameters of operations
+     * @return The results, in the order of the expressions
+     */
+    public List<T> evaluate(Bindings<T> bindings, EvaluationContext context) {
+        if (bindings.variables != union.getVariables()) {
+            throw new Expr4jException("Bindings do not belong to this expression set");
+        }
+
+        // discard the values of shared subexpressions from previous evaluations
+        bindings.invalidate();
+
+        List<T> results = new ArrayList<>(roots.size());
+        for (ExpressionNode root : roots) {
+            results.add(union.evaluate(root, bindings, context));
+        }
+        return results;
+    }
+
+    /**
+     * Evaluate all expressions against bindings of variables.<br>
+     * The parameters of operations are recycled from the context of the current thread.
+     *
+     * @param bindings Bindings of variables created by {@link #bindings()}
+     * @return The results, in the order of the expressions
+     */
+    public List<T> evaluate(Bindings<T> bindings) {
+        return evaluate(bindings, EvaluationContext.current());
+    }
+
+    /**
+     * Evaluate all expressions against a set of variables.
+     *
+     * @param variables Map of variables
+     * @return The results, in the order of the expressions
+     */
+    public List<T> evaluate(Map<String, T> variables) {
+        Bindings<T> bindings = this.bindings();
+        if (variables != null) bindings.setAll(variables);
+
+        return evaluate(bindings);
+    }
+
+    /**
+     * Get string representation of the expressions, one per line.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (ExpressionNode root : roots) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(union.toString(root));
+        }
+        return sb.toString();
+    }
+
+}
@@ -28,9 +28,6 @@ import in.pratanumandal.expr4j.token.Variable;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * The <code>ExpressionTokenizer&lt;T&gt;</code> class tokenizes expressions independent of the type of operand.
@@ -63,7 +60,8 @@ public class ExpressionTokenizer<T> {
     }
 
     /**
-     * Tokenize an expression.
+     * Tokenize an expression.<br>
+     * The expression is scanned one character at a time without creating substrings, except for the labels of variables and the operands.
      *
      * @param expr The expression
      * @return The list of tokens
@@ -77,41 +75,23 @@ public class ExpressionTokenizer<T> {
         // list of tokens
         List<Token> tokenList = new ArrayList<>();
 
-        // initialize patterns
-        Pattern executablePattern = Pattern.compile(expressionDictionary.getExecutables()
-                .stream()
-                .map(Pattern::quote)
-                .sorted((e1, e2) -> (e2.length() - e1.length()))
-                .collect(Collectors.joining("|")));
-
-        Pattern unaryPattern = Pattern.compile("\\+|\\-");
-        Pattern separatorPattern = Pattern.compile("\\(|\\)|,");
-        Pattern variablePattern = Pattern.compile("[a-zA-Z]+[0-9]*[a-zA-Z]*");
-        Pattern whitespacePattern = Pattern.compile("\\s+");
-
-        List<Pattern> operandPatternList = new ArrayList<>();
-        for (String patternString : expressionConfig.getOperandPattern()) {
-            Pattern operandPattern = Pattern.compile(patternString);
-            operandPatternList.add(operandPattern);
-        }
+        OperandScanner operandScanner = expressionConfig.operandScanner();
 
         // initialize parsing variables
         int index = 0;
+        int length = expr.length();
         Token lastToken = null;
         boolean probableUnary = true;
 
         // while has more characters
-        outer:
-        while (index < expr.length()) {
-            Matcher matcher;
+        while (index < length) {
+            char c = expr.charAt(index);
 
             // check for separator
-            matcher = separatorPattern.matcher(expr.substring(index));
-            if (matcher.lookingAt()) {
-                String match = matcher.group();
-                index += match.length();
+            if (c == '(' || c == ')' || c == ',') {
+                index++;
 
-                Separator separator = Separator.getSeparator(match);
+                Separator separator = c == '(' ? Separator.OPEN_BRACKET : c == ')' ? Separator.CLOSE_BRACKET : Separator.COMMA;
 
                 if (separator == Separator.OPEN_BRACKET) {
                     addImplicitMultiplication(tokenList, lastToken);
@@ -131,12 +111,10 @@ public class ExpressionTokenizer<T> {
             }
 
             // check for unary operators
-            matcher = unaryPattern.matcher(expr.substring(index));
-            if (probableUnary && matcher.lookingAt()) {
-                String match = matcher.group();
-                index += match.length();
+            if (probableUnary && (c == '+' || c == '-')) {
+                index++;
 
-                Operator<T> operator = expressionDictionary.getPrefixOperator(match);
+                Operator<T> operator = expressionDictionary.getPrefixOperator(c == '+' ? "+" : "-");
                 tokenList.add(operator);
 
                 probableUnary = false;
@@ -146,9 +124,8 @@ public class ExpressionTokenizer<T> {
             }
 
             // check for executables
-            matcher = executablePattern.matcher(expr.substring(index));
-            if (matcher.lookingAt()) {
-                String match = matcher.group();
+            String match = expressionDictionary.matchExecutable(expr, index);
+            if (match != null) {
                 index += match.length();
 
                 // encountered a function
@@ -194,35 +171,29 @@ public class ExpressionTokenizer<T> {
             }
 
             // check for operands
-            for (Pattern numberPattern : operandPatternList) {
-                matcher = numberPattern.matcher(expr.substring(index));
-                if (matcher.lookingAt()) {
-                    String match = matcher.group();
-                    index += match.length();
-
-                    addImplicitMultiplication(tokenList, lastToken);
+            int end = operandScanner.scan(expr, index);
+            if (end > index) {
+                addImplicitMultiplication(tokenList, lastToken);
 
-                    Operand<T> operand = new Operand<T>(expressionConfig.stringToOperand(match));
-                    tokenList.add(operand);
+                Operand<T> operand = new Operand<T>(expressionConfig.stringToOperand(expr.substring(index, end)));
+                tokenList.add(operand);
 
-                    probableUnary = false;
-                    lastToken = operand;
+                index = end;
+                probableUnary = false;
+                lastToken = operand;
 
-                    continue outer;
-                }
+                continue;
             }
 
             // check for variables
-            matcher = variablePattern.matcher(expr.substring(index));
-            if (matcher.lookingAt()) {
-                String match = matcher.group();
-                index += match.length();
-
+            end = scanVariable(expr, index);
+            if (end > index) {
                 addImplicitMultiplication(tokenList, lastToken);
 
-                Variable variable = new Variable(match);
+                Variable variable = new Variable(expr.substring(index, end));
                 tokenList.add(variable);
 
+                index = end;
                 probableUnary = false;
                 lastToken = variable;
 
@@ -230,10 +201,8 @@ public class ExpressionTokenizer<T> {
             }
 
             // check for whitespace
-            matcher = whitespacePattern.matcher(expr.substring(index));
-            if (matcher.lookingAt()) {
-                String match = matcher.group();
-                index += match.length();
+            if (isWhitespace(c)) {
+                index++;
 
                 continue;
             }
@@ -245,6 +214,54 @@ public class ExpressionTokenizer<T> {
         return tokenList;
     }
 
+    /**
+     * Scan for a variable starting at an index.<br>
+     * A variable consists of letters, optionally followed by digits, optionally followed by letters.
+     *
+     * @param expr The expression
+     * @param index The index
+     * @return The index after the end of the variable, or the index itself if no variable starts at the index
+     */
+    private int scanVariable(String expr, int index) {
+        int length = expr.length();
+        int position = index;
+
+        while (position < length && isLetter(expr.charAt(position))) {
+            position++;
+        }
+        if (position == index) {
+            return index;
+        }
+        while (position < length && OperandScanner.isDigit(expr.charAt(position))) {
+            position++;
+        }
+        while (position < length && isLetter(expr.charAt(position))) {
+            position++;
+        }
+
+        return position;
+    }
+
+    /**
+     * Check if a character is an ASCII letter.
+     *
+     * @param c The character
+     * @return True if the character is a letter, false otherwise
+     */
+    private boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Check if a character is whitespace, as matched by the regular expression <code>\s</code>.
+     *
+     * @param c The character
+     * @return True if the character is whitespace, false otherwise
+     */
+    private boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
     /**
      * Check if a string is blank or not.
      *
@@ -252,7 +269,15 @@ public class ExpressionTokenizer<T> {
      * @return True if blank, false otherwise
      */
     private boolean isBlank(String str) {
-        return str == null || str.length() == 0 || str.chars().allMatch(Character::isWhitespace);
+        if (str == null) {
+            return true;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (!Character.isWhitespace(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -0,0 +1,378 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operand;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.Variable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The <code>IncrementalEvaluator&lt;T&gt;</code> class evaluates an expression repeatedly while its variables change,
+ * recomputing only the subtrees that depend on the variables changed since the previous evaluation.<br><br>
+ *
+ * The evaluator records the variables every subtree depends on, and keeps the result of every subtree
+ * whose operations are all pure, as declared by {@link Operator#pure} and {@link Function#pure}.
+ * When evaluation reaches such a subtree and none of its variables changed since its result was computed, the result is reused.
+ * Subtrees containing an operation that is not pure are recomputed every time.
+ * Setting a variable to a value equal to its current value does not count as a change.<br><br>
+ *
+ * The evaluator is not thread safe.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+public class IncrementalEvaluator<T> {
+
+    /**
+     * The expression.
+     */
+    private final Expression<T> expression;
+
+    /**
+     * Bindings of variables.
+     */
+    private final Bindings<T> bindings;
+
+    /**
+     * Entry of the root of the expression tree.
+     */
+    private final Entry root;
+
+    /**
+     * Round in which each variable last changed.
+     */
+    private final long[] changed;
+
+    /**
+     * Current round of evaluation.
+     */
+    private long round;
+
+    /**
+     * First round whose results are kept, discarding the results of earlier rounds.
+     */
+    private long kept;
+
+    /**
+     * Number of subtree results reused by the last evaluation.
+     */
+    private int reusedCount;
+
+    /**
+     * Number of operations computed by the last evaluation.
+     */
+    private int recomputedCount;
+
+    /**
+     * Evaluator for parameters whose target is an entry.
+     */
+    private final ParameterEvaluator<T> entryEvaluator = (target, bindings, context) -> this.evaluate((Entry) target, context);
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param expression The expression
+     */
+    public IncrementalEvaluator(Expression<T> expression) {
+        if (expression.root == null) {
+            throw new Expr4jException("Invalid expression");
+        }
+
+        this.expression = expression;
+        this.bindings = expression.bindings();
+        this.changed = new long[expression.getVariables().size()];
+        this.kept = 1;
+        this.root = index(expression.root);
+    }
+
+    /**
+     * Create the entries of the expression tree, recording the variables each subtree depends on.<br>
+     * Shared subexpressions get a single entry, so their result is kept once.
+     *
+     * @param root Root of the expression tree
+     * @return Entry of the root
+     */
+    private Entry index(ExpressionNode root) {
+        Map<ExpressionNode, Entry> entries = new IdentityHashMap<>();
+        Map<ExpressionNode, BitSet> dependencies = new IdentityHashMap<>();
+
+        ExpressionNode.postorder(root, (node, parent, index) -> {
+            if (entries.containsKey(node)) {
+                return;
+            }
+
+            BitSet slots = new BitSet();
+            boolean pure;
+
+            if (node.token instanceof Variable) {
+                Variable variable = (Variable) node.token;
+                int slot = variable.slot == Variable.UNRESOLVED ? expression.getSlot(variable.label) : variable.slot;
+                pure = slot >= 0;
+                if (pure) slots.set(slot);
+            }
+            else if (node.token instanceof Operand) {
+                pure = true;
+            }
+            else {
+                pure = node.token instanceof Function ? ((Function<?>) node.token).pure : ((Operator<?>) node.token).pure;
+            }
+
+            Entry[] children = new Entry[node.children == null ? 0 : node.children.size()];
+            for (int i = 0; i < children.length; i++) {
+                ExpressionNode child = node.children.get(i);
+                children[i] = entries.get(child);
+                pure &= children[i].cacheable;
+                slots.or(dependencies.get(child));
+            }
+
+            entries.put(node, new Entry(node, children, slots.stream().toArray(), pure));
+            dependencies.put(node, slots);
+        });
+
+        return entries.get(root);
+    }
+
+    /**
+     * Get the expression.
+     *
+     * @return The expression
+     */
+    public Expression<T> getExpression() {
+        return expression;
+    }
+
+    /**
+     * Set the value of the variable at a slot.
+     *
+     * @param slot The slot, as given by {@link Expression#getSlot(String)}
+     * @param value The value
+     * @return This evaluator
+     */
+    public IncrementalEvaluator<T> set(int slot, T value) {
+        if (!bindings.isBound(slot) || !Objects.equals(bindings.get(slot), value)) {
+            bindings.set(slot, value);
+            changed[slot] = round + 1;
+        }
+        return this;
+    }
+
+    /**
+     * Set the value of a variable.<br>
+     * Labels of variables that are not present in the expression are ignored.
+     *
+     * @param label The label of the variable
+     * @param value The value
+     * @return This evaluator
+     */
+    public IncrementalEvaluator<T> set(String label, T value) {
+        int slot = expression.getSlot(label);
+        if (slot >= 0) set(slot, value);
+        return this;
+    }
+
+    /**
+     * Set the values of the variables present in a map.<br>
+     * Labels of variables that are not present in the expression are ignored.
+     *
+     * @param variables Map of variables
+     * @return This evaluator
+     */
+    public IncrementalEvaluator<T> setAll(Map<String, T> variables) {
+        List<String> labels = expression.getVariables();
+        for (int slot = 0; slot < labels.size(); slot++) {
+            String label = labels.get(slot);
+            T value = variables.get(label);
+            if (value != null || variables.containsKey(label)) {
+                set(slot, value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Discard the results of all subtrees, so that the next evaluation recomputes the whole expression.
+     *
+     * @return This evaluator
+     */
+    public IncrementalEvaluator<T> reset() {
+        kept = round + 1;
+        return this;
+    }
+
+    /**
+     * Evaluate the expression, reusing the results of the subtrees whose variables did not change.
+     *
+     * @return Evaluated result
+     */
+    public T evaluate() {
+        round++;
+        reusedCount = 0;
+        recomputedCount = 0;
+
+        // discard the values of shared subexpressions from previous evaluations
+        bindings.invalidate();
+
+        return evaluate(root, EvaluationContext.current());
+    }
+
+    /**
+     * Get the number of subtree results reused by the last evaluation.<br>
+     * Each reused result spares the evaluation of its whole subtree.
+     *
+     * @return The number of results reused
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * Get the number of operations computed by the last evaluation.
+     *
+     * @return The number of operations computed
+     */
+    public int getRecomputedCount() {
+        return recomputedCount;
+    }
+
+    /**
+     * Evaluate an entry, reusing its result if none of its variables changed since it was computed.
+     *
+     * @param entry The entry
+     * @param context Context used to recycle the parameters of operations
+     * @return Result of the subtree
+     */
+    @SuppressWarnings("unchecked")
+    private T evaluate(Entry entry, EvaluationContext context) {
+        ExpressionNode node = entry.node;
+        if (entry.children.length == 0 && !(node.token instanceof Function)) {
+            return expression.evaluate(node, bindings, context);
+        }
+
+        if (entry.cacheable && entry.computed >= kept && isCurrent(entry)) {
+            reusedCount++;
+            return (T) entry.result;
+        }
+
+        T result;
+        if (context.depth() >= Expression.ITERATIVE_DEPTH) {
+            // deep subtrees are evaluated iteratively as a whole
+            result = expression.evaluate(node, bindings, context);
+        }
+        else {
+            List<ExpressionParameter<T>> parameters = context.push(entryEvaluator, entry.childList, bindings);
+            try {
+                result = node.token instanceof Function ? ((Function<T>) node.token).evaluate(parameters) : ((Operator<T>) node.token).evaluate(parameters);
+            }
+            finally {
+                context.pop();
+            }
+        }
+        recomputedCount++;
+
+        if (entry.cacheable) {
+            entry.result = result;
+            entry.computed = round;
+        }
+        return result;
+    }
+
+    /**
+     * Check if none of the variables of an entry changed since its result was computed.
+     *
+     * @param entry The entry
+     * @return True if the result is current, false otherwise
+     */
+    private boolean isCurrent(Entry entry) {
+        for (int slot : entry.slots) {
+            if (changed[slot] > entry.computed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The <code>Entry</code> class holds a node of the expression tree with the variables it depends on and its last result.
+     */
+    private static final class Entry {
+
+        /**
+         * The node.
+         */
+        private final ExpressionNode node;
+
+        /**
+         * Entries of the children of the node.
+         */
+        private final Entry[] children;
+
+        /**
+         * Entries of the children of the node, as a list.
+         */
+        private final List<Entry> childList;
+
+        /**
+         * Slots of the variables the subtree depends on.
+         */
+        private final int[] slots;
+
+        /**
+         * Flag to indicate if the result of the subtree can be kept, that is, if all of its operations are pure.
+         */
+        private final boolean cacheable;
+
+        /**
+         * The last result of the subtree.
+         */
+        private Object result;
+
+        /**
+         * Round in which the result was computed, or 0 if never.
+         */
+        private long computed;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param node The node
+         * @param children Entries of the children of the node
+         * @param slots Slots of the variables the subtree depends on
+         * @param cacheable Flag to indicate if the result of the subtree can be kept
+         */
+        private Entry(ExpressionNode node, Entry[] children, int[] slots, boolean cacheable) {
+            this.node = node;
+            this.children = children;
+            this.childList = Arrays.asList(children);
+            this.slots = slots;
+            this.cacheable = cacheable;
+        }
+
+    }
+
+}
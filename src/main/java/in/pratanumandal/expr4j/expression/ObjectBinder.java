@@ -0,0 +1,283 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * The <code>ObjectBinder&lt;R, T&gt;</code> class binds the variables of an expression to the accessors of a class,
+ * so that the expression can be evaluated directly against objects of that class.<br><br>
+ *
+ * Every variable is bound when the binder is created to the first of these members of the class found:
+ * a method with the label of the variable, such as the accessor of a record component,
+ * a getter such as <code>getX()</code>, or <code>isX()</code> for a boolean,
+ * or a field with the label of the variable, which need not be public.
+ * A variable that has no such member, or whose member does not have the type of the operands, is reported at once.
+ * The members are looked up with reflection once and then read through method handles,
+ * so evaluation does not use reflection nor copy the object into a map.<br><br>
+ *
+ * A binder is thread safe.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <R> The type of object
+ * @param <T> The type of operand
+ */
+public final class ObjectBinder<R, T> {
+
+    /**
+     * Type of accessors after adaptation, taking the object and returning the value.
+     */
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * The expression.
+     */
+    private final Expression<T> expression;
+
+    /**
+     * The type of object.
+     */
+    private final Class<R> type;
+
+    /**
+     * Accessors of the variables in the order of their slots.
+     */
+    private final MethodHandle[] accessors;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param expression The expression
+     * @param type The type of object
+     * @param operandType The type of operand, used to check the types of the members
+     */
+    public ObjectBinder(Expression<T> expression, Class<R> type, Class<T> operandType) {
+        this.expression = expression;
+        this.type = type;
+
+        List<String> variables = expression.getVariables();
+        this.accessors = new MethodHandle[variables.size()];
+        for (int slot = 0; slot < accessors.length; slot++) {
+            accessors[slot] = accessor(type, variables.get(slot), operandType);
+        }
+    }
+
+    /**
+     * Find the accessor of a variable.
+     *
+     * @param type The type of object
+     * @param label The label of the variable
+     * @param operandType The type of operand
+     * @return The accessor, adapted to {@link #ACCESSOR_TYPE}
+     */
+    private static MethodHandle accessor(Class<?> type, String label, Class<?> operandType) {
+        String suffix = label.isEmpty() ? label : Character.toUpperCase(label.charAt(0)) + label.substring(1);
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Method method = findMethod(type, label);
+            if (method == null) {
+                method = findMethod(type, "get" + suffix);
+            }
+            if (method == null) {
+                method = findMethod(type, "is" + suffix);
+                if (method != null && method.getReturnType() != boolean.class) {
+                    method = null;
+                }
+            }
+
+            if (method != null) {
+                checkType(type, label, method.getReturnType(), operandType);
+                makeAccessible(method);
+                return lookup.unreflect(method).asType(ACCESSOR_TYPE);
+            }
+
+            Field field = findField(type, label);
+            if (field != null) {
+                checkType(type, label, field.getType(), operandType);
+                makeAccessible(field);
+                return lookup.unreflectGetter(field).asType(ACCESSOR_TYPE);
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new Expr4jException("Cannot access member for variable " + label + " in " + type.getName(), e);
+        }
+
+        throw new Expr4jException("No member found for variable " + label + " in " + type.getName());
+    }
+
+    /**
+     * Find a public instance method without parameters which returns a value.
+     *
+     * @param type The type of object
+     * @param name The name of the method
+     * @return The method if found, null otherwise
+     */
+    private static Method findMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class) {
+                return null;
+            }
+            return method;
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Find an instance field declared by a class or its superclasses.
+     *
+     * @param type The type of object
+     * @param name The name of the field
+     * @return The field if found, null otherwise
+     */
+    private static Field findField(Class<?> type, String name) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that a member has the type of the operands.
+     *
+     * @param type The type of object
+     * @param label The label of the variable
+     * @param memberType The type of the member
+     * @param operandType The type of operand
+     */
+    private static void checkType(Class<?> type, String label, Class<?> memberType, Class<?> operandType) {
+        Class<?> boxed = MethodType.methodType(memberType).wrap().returnType();
+        if (!operandType.isAssignableFrom(boxed)) {
+            throw new Expr4jException("Member for variable " + label + " in " + type.getName() + " has type " + memberType.getName()
+                    + " instead of " + operandType.getName());
+        }
+    }
+
+    /**
+     * Suppress access checks for a member, if permitted, so that members of classes which are not public can be read.
+     *
+     * @param member The member
+     */
+    private static void makeAccessible(AccessibleObject member) {
+        try {
+            member.setAccessible(true);
+        }
+        catch (RuntimeException e) {
+            // the member is read with the access it already has
+        }
+    }
+
+    /**
+     * Get the expression.
+     *
+     * @return The expression
+     */
+    public Expression<T> getExpression() {
+        return expression;
+    }
+
+    /**
+     * Get the type of object.
+     *
+     * @return The type of object
+     */
+    public Class<R> getType() {
+        return type;
+    }
+
+    /**
+     * Bind the variables to the values read from an object.
+     *
+     * @param object The object
+     * @param bindings Bindings of variables created by {@link Expression#bindings()}
+     * @return The bindings
+     */
+    @SuppressWarnings("unchecked")
+    public Bindings<T> bind(R object, Bindings<T> bindings) {
+        if (object == null) {
+            throw new Expr4jException("Cannot bind variables to null");
+        }
+
+        for (int slot = 0; slot < accessors.length; slot++) {
+            Object value;
+            try {
+                value = accessors[slot].invokeExact((Object) object);
+            }
+            catch (RuntimeException | Error e) {
+                throw e;
+            }
+            catch (Throwable e) {
+                throw new Expr4jException("Failed to read variable " + expression.getVariables().get(slot), e);
+            }
+            bindings.set(slot, (T) value);
+        }
+        return bindings;
+    }
+
+    /**
+     * Evaluate the expression against an object, reusing bindings of variables and a context.
+     *
+     * @param object The object
+     * @param bindings Bindings of variables created by {@link Expression#bindings()}
+     * @param context Context used to recycle the parameters of operations
+     * @return Evaluated result
+     */
+    public T evaluate(R object, Bindings<T> bindings, EvaluationContext context) {
+        return expression.evaluate(bind(object, bindings), context);
+    }
+
+    /**
+     * Evaluate the expression against an object, reusing bindings of variables.
+     *
+     * @param object The object
+     * @param bindings Bindings of variables created by {@link Expression#bindings()}
+     * @return Evaluated result
+     */
+    public T evaluate(R object, Bindings<T> bindings) {
+        return expression.evaluate(bind(object, bindings));
+    }
+
+    /**
+     * Evaluate the expression against an object.
+     *
+     * @param object The object
+     * @return Evaluated result
+     */
+    public T evaluate(R object) {
+        return evaluate(object, expression.bindings());
+    }
+
+}
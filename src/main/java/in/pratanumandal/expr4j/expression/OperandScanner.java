@@ -0,0 +1,120 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The <code>OperandScanner</code> interface recognizes operands while an expression is being tokenized.<br>
+ * A scanner is given the expression and the index to scan from, and reports where the operand starting at that index ends.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+@FunctionalInterface
+public interface OperandScanner {
+
+    /**
+     * Scanner for decimal numbers with an optional fraction and exponent, such as <code>42</code>, <code>.5</code> or <code>1.5e-3</code>.
+     */
+    OperandScanner NUMBER = (expression, index) -> {
+        int length = expression.length();
+        int position = index;
+
+        // integer part
+        while (position < length && isDigit(expression.charAt(position))) {
+            position++;
+        }
+        boolean integer = position > index;
+
+        // fraction part
+        if (position + 1 < length && expression.charAt(position) == '.' && isDigit(expression.charAt(position + 1))) {
+            position += 2;
+            while (position < length && isDigit(expression.charAt(position))) {
+                position++;
+            }
+        }
+        else if (!integer) {
+            return -1;
+        }
+
+        // exponent part
+        if (integer && position < length && expression.charAt(position) == 'e') {
+            int exponent = position + 1;
+            if (exponent < length && (expression.charAt(exponent) == '+' || expression.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            if (exponent < length && isDigit(expression.charAt(exponent))) {
+                position = exponent + 1;
+                while (position < length && isDigit(expression.charAt(position))) {
+                    position++;
+                }
+            }
+        }
+
+        return position;
+    };
+
+    /**
+     * Scan for an operand starting at an index.
+     *
+     * @param expression The expression
+     * @param index The index to scan from
+     * @return The index after the end of the operand, or -1 if no operand starts at the index
+     */
+    int scan(CharSequence expression, int index);
+
+    /**
+     * Check if a character is an ASCII digit.
+     *
+     * @param c The character
+     * @return True if the character is a digit, false otherwise
+     */
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Create a scanner that matches a list of regular expressions in order.
+     *
+     * @param patterns The regular expressions
+     * @return The scanner
+     */
+    static OperandScanner ofPatterns(List<String> patterns) {
+        List<Pattern> compiled = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            compiled.add(Pattern.compile(pattern));
+        }
+
+        return (expression, index) -> {
+            for (Pattern pattern : compiled) {
+                Matcher matcher = pattern.matcher(expression);
+                matcher.region(index, expression.length());
+                if (matcher.lookingAt()) {
+                    return matcher.end();
+                }
+            }
+            return -1;
+        };
+    }
+
+}
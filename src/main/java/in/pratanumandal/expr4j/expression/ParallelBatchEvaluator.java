@@ -0,0 +1,264 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The <code>ParallelBatchEvaluator</code> class evaluates expressions over columns of variables using all threads of a fork/join pool.<br>
+ * The rows are split recursively into chunks of at most the chunk size, which idle threads steal from busy ones,
+ * and every chunk is evaluated with {@link DoubleExpression#evaluateBatch(double[][], double[], int, int)}.
+ * Results are written to preallocated arrays at the index of their row, so they do not depend on how the work was scheduled.<br><br>
+ *
+ * Each chunk is evaluated in batches of {@link DoubleExpression#BATCH_SIZE} rows. If a batch fails, its rows are evaluated again one at a time,
+ * since batch evaluation applies each operation to all rows of the batch and cannot tell which row failed.
+ * The operations applied to the rows of the failed batch before the failure are therefore applied again,
+ * so operations with side effects may observe those rows twice; rows of other batches are never evaluated again.
+ * Rows that fail get a result of NaN and are reported as {@link BatchError}s, ordered by expression and row.<br><br>
+ *
+ * The speedup over a single thread has not been measured on more than one core; the included benchmark can be run to measure it.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+public class ParallelBatchEvaluator {
+
+    /**
+     * Default maximum number of rows evaluated by a single task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * DoubleExpression.BATCH_SIZE;
+
+    /**
+     * The fork/join pool.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Maximum number of rows evaluated by a single task.
+     */
+    private final int chunkSize;
+
+    /**
+     * No-Argument Constructor.<br>
+     * Creates an evaluator using the common fork/join pool.
+     */
+    public ParallelBatchEvaluator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param pool The fork/join pool
+     * @param chunkSize Maximum number of rows evaluated by a single task
+     */
+    public ParallelBatchEvaluator(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new Expr4jException("Invalid chunk size: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Evaluate an expression over all rows of columns of variables.
+     *
+     * @param expression The expression
+     * @param columns Values of the variables, one column per slot of the expression
+     * @param results Array to store the result of each row, whose length is the number of rows
+     * @return The errors of the rows that failed, ordered by row
+     */
+    public List<BatchError> evaluate(DoubleExpression expression, double[][] columns, double[] results) {
+        return evaluate(new DoubleExpression[] { expression }, new double[][][] { columns }, new double[][] { results });
+    }
+
+    /**
+     * Evaluate several expressions over all rows of columns of variables.
+     *
+     * @param expressions The expressions
+     * @param columns Values of the variables by label
+     * @param results Arrays to store the result of each row, one per expression, whose length is the number of rows
+     * @return The errors of the rows that failed, ordered by expression and row
+     */
+    public List<BatchError> evaluate(List<DoubleExpression> expressions, Map<String, double[]> columns, double[][] results) {
+        if (results.length != expressions.size()) {
+            throw new Expr4jException("Expected " + expressions.size() + " result arrays, found " + results.length);
+        }
+
+        // lay out the columns in the slot order of each expression
+        double[][][] slotColumns = new double[expressions.size()][][];
+        for (int i = 0; i < expressions.size(); i++) {
+            List<String> variables = expressions.get(i).getVariables();
+            slotColumns[i] = new double[variables.size()][];
+            for (int slot = 0; slot < variables.size(); slot++) {
+                double[] column = columns.get(variables.get(slot));
+                if (column == null) {
+                    throw new Expr4jException("Column not found for variable: " + variables.get(slot));
+                }
+                slotColumns[i][slot] = column;
+            }
+        }
+
+        return evaluate(expressions.toArray(new DoubleExpression[0]), slotColumns, results);
+    }
+
+    /**
+     * Evaluate several expressions over all rows of their columns.
+     *
+     * @param expressions The expressions
+     * @param columns Columns of each expression in its slot order
+     * @param results Arrays to store the result of each row, one per expression
+     * @return The errors of the rows that failed, ordered by expression and row
+     */
+    private List<BatchError> evaluate(DoubleExpression[] expressions, double[][][] columns, double[][] results) {
+        int rows = results.length == 0 ? 0 : results[0].length;
+        for (double[] result : results) {
+            if (result.length != rows) {
+                throw new Expr4jException("Result arrays must have the same length");
+            }
+        }
+
+        // validate the columns up front, so that chunks only fail on errors of evaluation
+        for (int i = 0; i < expressions.length; i++) {
+            List<String> variables = expressions[i].getVariables();
+            if (columns[i].length < variables.size()) {
+                throw new Expr4jException("Expected " + variables.size() + " columns, found " + columns[i].length);
+            }
+            for (int slot = 0; slot < variables.size(); slot++) {
+                if (columns[i][slot].length < rows) {
+                    throw new Expr4jException("Column of variable " + variables.get(slot) + " has fewer than " + rows + " rows");
+                }
+            }
+        }
+
+        Queue<BatchError> errors = new ConcurrentLinkedQueue<>();
+        pool.invoke(new Chunk(expressions, columns, results, errors, 0, rows));
+
+        List<BatchError> sorted = new ArrayList<>(errors);
+        sorted.sort(Comparator.comparingInt(BatchError::getExpression).thenComparingInt(BatchError::getRow));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * The <code>Chunk</code> class evaluates a range of rows, splitting it while it is larger than the chunk size.
+     */
+    private final class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The expressions */
+        private final DoubleExpression[] expressions;
+
+        /** Columns of each expression in its slot order */
+        private final double[][][] columns;
+
+        /** Results of each expression */
+        private final double[][] results;
+
+        /** Errors of the rows that failed */
+        private final Queue<BatchError> errors;
+
+        /** Index of the first row, inclusive */
+        private final int from;
+
+        /** Index of the last row, exclusive */
+        private final int to;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param expressions The expressions
+         * @param columns Columns of each expression in its slot order
+         * @param results Results of each expression
+         * @param errors Errors of the rows that failed
+         * @param from Index of the first row, inclusive
+         * @param to Index of the last row, exclusive
+         */
+        private Chunk(DoubleExpression[] expressions, double[][][] columns, double[][] results,
+                      Queue<BatchError> errors, int from, int to) {
+            this.expressions = expressions;
+            this.columns = columns;
+            this.results = results;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(expressions, columns, results, errors, from, middle),
+                        new Chunk(expressions, columns, results, errors, middle, to));
+                return;
+            }
+
+            for (int i = 0; i < expressions.length; i++) {
+                for (int start = from; start < to; start += DoubleExpression.BATCH_SIZE) {
+                    int end = Math.min(start + DoubleExpression.BATCH_SIZE, to);
+                    try {
+                        expressions[i].evaluateBatch(columns[i], results[i], start, end);
+                    }
+                    catch (RuntimeException e) {
+                        this.evaluateRows(i, start, end);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Evaluate rows of an expression one at a time, recording the rows that fail.
+         *
+         * @param index Index of the expression
+         * @param start Index of the first row, inclusive
+         * @param end Index of the last row, exclusive
+         */
+        private void evaluateRows(int index, int start, int end) {
+            DoubleExpression expression = expressions[index];
+            double[][] expressionColumns = columns[index];
+            double[] slots = new double[expressionColumns.length];
+            EvaluationContext context = EvaluationContext.current();
+
+            for (int row = start; row < end; row++) {
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = expressionColumns[slot][row];
+                }
+                try {
+                    results[index][row] = expression.evaluateAsDouble(slots, context);
+                }
+                catch (RuntimeException e) {
+                    results[index][row] = Double.NaN;
+                    errors.add(new BatchError(index, row, e));
+                }
+            }
+        }
+
+    }
+
+}
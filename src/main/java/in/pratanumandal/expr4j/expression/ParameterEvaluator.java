@@ -0,0 +1,41 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+/**
+ * The <code>ParameterEvaluator&lt;T&gt;</code> interface evaluates the target of a lazy {@link ExpressionParameter}.<br>
+ * The target is the part of an expression the parameter stands for, such as a node of the expression tree or a compiled sub-expression.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+public interface ParameterEvaluator<T> {
+
+    /**
+     * Evaluate the target of a parameter.
+     *
+     * @param target The target of the parameter
+     * @param bindings Bindings of variables
+     * @param context Context used to recycle the parameters of operations
+     * @return Evaluated result
+     */
+    T evaluate(Object target, Bindings<T> bindings, EvaluationContext context);
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.token.Constant;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operand;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.Variable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>SubexpressionEliminator</code> class shares common subexpressions of expression trees.<br>
+ * Subtrees are hashed structurally from the bottom up. Every subtree of a pure operation that is structurally equal to one seen before
+ * is replaced by that one, turning the tree into a directed acyclic graph.
+ * Nodes of pure operations reached from more than one parent are then marked as shared, so that their value is computed at most once per evaluation.<br><br>
+ *
+ * An eliminator may process several trees, in which case equal subexpressions are shared across them.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+final class SubexpressionEliminator {
+
+    /**
+     * Canonical nodes by structural key.
+     */
+    private final Map<List<Object>, ExpressionNode> canonical = new HashMap<>();
+
+    /**
+     * Identifiers of the nodes visited, used to key their parents.
+     */
+    private final Map<ExpressionNode, Integer> identifiers = new IdentityHashMap<>();
+
+    /**
+     * Number of nodes visited.
+     */
+    private int originalCount;
+
+    /**
+     * Replace the subtrees of a tree that are equal to subtrees seen before.
+     *
+     * @param root The root of the tree
+     * @return The root of the tree, which may have been replaced
+     */
+    ExpressionNode share(ExpressionNode root) {
+        ExpressionNode[] result = { root };
+
+        ExpressionNode.postorder(root, (node, parent, index) -> {
+            originalCount++;
+
+            ExpressionNode replacement = this.canonicalize(node);
+            if (replacement != node) {
+                if (parent == null) {
+                    result[0] = replacement;
+                }
+                else {
+                    parent.children.set(index, replacement);
+                }
+            }
+        });
+
+        return result[0];
+    }
+
+    /**
+     * Get the number of nodes in the trees before sharing.
+     *
+     * @return The number of nodes
+     */
+    int getOriginalCount() {
+        return originalCount;
+    }
+
+    /**
+     * Find the canonical node for a node whose children are already canonical.
+     *
+     * @param node The node
+     * @return The canonical node, which is the node itself if it was not seen before or cannot be shared
+     */
+    @SuppressWarnings("unchecked")
+    private ExpressionNode canonicalize(ExpressionNode node) {
+        List<Object> key = new ArrayList<>();
+
+        if (node.token instanceof Variable) {
+            key.add(Variable.class);
+            key.add(((Variable) node.token).label);
+        }
+        else if (node.token instanceof Constant) {
+            key.add(Constant.class);
+            key.add(((Constant<?>) node.token).label);
+        }
+        else if (node.token instanceof Operand) {
+            key.add(Operand.class);
+            key.add(((Operand<?>) node.token).value);
+        }
+        else if (node.token instanceof Function && ((Function<?>) node.token).pure) {
+            Function<?> function = (Function<?>) node.token;
+            key.add(Function.class);
+            key.add(function.label);
+            key.add(function.parameters);
+            key.add(function.operation);
+        }
+        else if (node.token instanceof Operator && ((Operator<?>) node.token).pure) {
+            Operator<?> operator = (Operator<?>) node.token;
+            key.add(Operator.class);
+            key.add(operator.label);
+            key.add(operator.type);
+            key.add(operator.operation);
+        }
+        else {
+            // impure operations are never shared
+            identifiers.put(node, identifiers.size());
+            return node;
+        }
+
+        if (node.children != null) {
+            for (ExpressionNode child : node.children) {
+                key.add(identifiers.get(child));
+            }
+        }
+
+        ExpressionNode existing = canonical.putIfAbsent(key, node);
+        if (existing != null) {
+            return existing;
+        }
+
+        identifiers.put(node, identifiers.size());
+        return node;
+    }
+
+    /**
+     * Mark the operations reached from more than one parent as shared, numbering them in the order first reached.
+     *
+     * @param roots The roots of the graph
+     * @return The number of distinct nodes followed by the number of shared nodes
+     */
+    static int[] markShared(List<ExpressionNode> roots) {
+        Map<ExpressionNode, Integer> parents = new IdentityHashMap<>();
+        int shared = 0;
+
+        Deque<ExpressionNode> stack = new ArrayDeque<>();
+        for (ExpressionNode root : roots) {
+            if (root == null) {
+                continue;
+            }
+
+            int count = parents.merge(root, 1, Integer::sum);
+            if (count == 1) {
+                root.shared = ExpressionNode.NOT_SHARED;
+                stack.push(root);
+            }
+            else if (count == 2 && root.children != null) {
+                root.shared = shared++;
+            }
+        }
+
+        while (!stack.isEmpty()) {
+            ExpressionNode node = stack.pop();
+
+            if (node.children == null) {
+                continue;
+            }
+
+            for (ExpressionNode child : node.children) {
+                int count = parents.merge(child, 1, Integer::sum);
+                if (count == 1) {
+                    child.shared = ExpressionNode.NOT_SHARED;
+                    stack.push(child);
+                }
+                else if (count == 2 && child.children != null) {
+                    child.shared = shared++;
+                }
+            }
+        }
+
+        return new int[] { parents.size(), shared };
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The <code>VariableLoader&lt;T&gt;</code> class fetches the values of variables for one evaluation
+ * through an {@link AsyncVariableResolver}.<br>
+ * At most one batch is in flight at a time; variables requested meanwhile are queued and fetched together once it completes.
+ * Every variable is fetched at most once.<br><br>
+ *
+ * The loader is thread safe. Threads waiting for a value block outside of any monitor, so they can be virtual threads.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+final class VariableLoader<T> implements VariableResolver<T> {
+
+    /**
+     * The resolver.
+     */
+    private final AsyncVariableResolver<T> resolver;
+
+    /**
+     * Lock guarding the state of the loader.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Futures holding the values of the variables requested so far.
+     */
+    private final Map<String, CompletableFuture<T>> futures;
+
+    /**
+     * Labels of the variables requested but not yet fetched.
+     */
+    private Set<String> pending;
+
+    /**
+     * Flag to indicate if a batch is in flight.
+     */
+    private boolean inFlight;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param resolver The resolver
+     */
+    VariableLoader(AsyncVariableResolver<T> resolver) {
+        this.resolver = resolver;
+        this.lock = new ReentrantLock();
+        this.futures = new HashMap<>();
+        this.pending = new LinkedHashSet<>();
+    }
+
+    /**
+     * Get the value of a variable, waiting for it to be fetched if needed.
+     *
+     * @param label The label of the variable
+     * @return The value
+     */
+    @Override
+    public T resolve(String label) {
+        CompletableFuture<T> future;
+        Set<String> batch = null;
+
+        lock.lock();
+        try {
+            future = futures.get(label);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                futures.put(label, future);
+                pending.add(label);
+
+                if (!inFlight) {
+                    batch = takePending();
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if (batch != null) {
+            dispatch(batch);
+        }
+
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new Expr4jException("Failed to resolve variable: " + label, e.getCause());
+        }
+    }
+
+    /**
+     * Take the pending labels as the next batch. Must be called with the lock held.
+     *
+     * @return The batch
+     */
+    private Set<String> takePending() {
+        Set<String> batch = pending;
+        pending = new LinkedHashSet<>();
+        inFlight = true;
+        return batch;
+    }
+
+    /**
+     * Fetch a batch of variables, then the variables requested while it was in flight.
+     *
+     * @param batch The labels of the variables
+     */
+    private void dispatch(Set<String> batch) {
+        CompletableFuture<Map<String, T>> fetched;
+        try {
+            fetched = resolver.resolve(batch);
+        }
+        catch (RuntimeException e) {
+            fetched = new CompletableFuture<>();
+            fetched.completeExceptionally(e);
+        }
+
+        fetched.whenComplete((values, throwable) -> {
+            Set<String> next = null;
+
+            lock.lock();
+            try {
+                for (String label : batch) {
+                    CompletableFuture<T> future = futures.get(label);
+                    if (throwable != null) {
+                        future.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+                    }
+                    else if (values == null || !values.containsKey(label)) {
+                        future.completeExceptionally(new Expr4jException("Variable not found: " + label));
+                    }
+                    else {
+                        future.complete(values.get(label));
+                    }
+                }
+
+                if (pending.isEmpty()) {
+                    inFlight = false;
+                }
+                else {
+                    next = takePending();
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+
+            if (next != null) {
+                dispatch(next);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.expression;
+
+/**
+ * The <code>VariableResolver&lt;T&gt;</code> interface supplies the values of variables on demand.<br><br>
+ *
+ * A resolver set on {@link Bindings} is asked for the value of a variable that is not bound only when evaluation reaches it,
+ * and at most once per evaluation. This avoids materializing every variable an expression might need,
+ * for example when the values are fields of a large object and the expression reads only a few of them.
+ * To report a variable that cannot be resolved, throw an {@link in.pratanumandal.expr4j.exception.Expr4jException}.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+@FunctionalInterface
+public interface VariableResolver<T> {
+
+    /**
+     * Resolve the value of a variable.
+     *
+     * @param label The label of the variable
+     * @return The value
+     */
+    T resolve(String label);
+
+    /**
+     * Resolve the value of a variable.<br>
+     * The default implementation resolves the variable by its label;
+     * implementations may override it to look the value up by its slot instead.
+     *
+     * @param slot The slot of the variable, as given by {@link Expression#getSlot(String)}
+     * @param label The label of the variable
+     * @return The value
+     */
+    default T resolve(int slot, String label) {
+        return resolve(label);
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package in.pratanumandal.expr4j.token;
+
+/**
+ * The <code>Constant&lt;T&gt;</code> class represents constants in the expression.<br>
+ * A constant is an operand whose value is resolved from the expression dictionary when the expression is built.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+public class Constant<T> extends Operand<T> {
+
+	/**
+	 * Label of the constant.
+	 */
+	public final String label;
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param label Label of the constant
+	 * @param value Value of the constant
+	 */
+	public Constant(String label, T value) {
+		super(value);
+		this.label = label;
+	}
+
+	@Override
+	public String toString() {
+		return label;
+	}
+
+}
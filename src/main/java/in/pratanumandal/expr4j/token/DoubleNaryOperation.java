@@ -0,0 +1,77 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.token;
+
+import in.pratanumandal.expr4j.expression.ExpressionParameter;
+
+import java.util.List;
+
+/**
+ * The <code>DoubleNaryOperation</code> interface represents an operation on any number of primitive doubles.<br>
+ * Operations implementing this interface are evaluated without boxing by a {@link in.pratanumandal.expr4j.expression.DoubleExpression},
+ * and can still be used by any other expression over doubles.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+@FunctionalInterface
+public interface DoubleNaryOperation extends EagerOperation<Double> {
+
+    /**
+     * Apply the operation.<br>
+     * The array may be longer than the number of operands and is only valid until the operation returns.
+     *
+     * @param operands The operands, starting at index 0
+     * @param count Number of operands
+     * @return The result
+     */
+    double applyAsDouble(double[] operands, int count);
+
+    /**
+     * Apply the operation to vectors of operands.<br>
+     * This is used by batch evaluation. The default implementation gathers the operands of one row at a time,
+     * which batch evaluation does itself without allocating when this method is not overridden;
+     * implementations may override it with a loop that is cheaper per element.<br>
+     * The array of vectors may be longer than the number of operands and is only valid until the operation returns.
+     *
+     * @param operands The vectors of operands, one per operand
+     * @param operandCount Number of operands
+     * @param results Array to store the results
+     * @param count Number of rows, which may be less than the length of the arrays
+     */
+    default void applyAsDouble(double[][] operands, int operandCount, double[] results, int count) {
+        double[] row = new double[operandCount];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < operandCount; j++) {
+                row[j] = operands[j][i];
+            }
+            results[i] = applyAsDouble(row, operandCount);
+        }
+    }
+
+    @Override
+    default Double execute(List<ExpressionParameter<Double>> parameters) {
+        double[] operands = new double[parameters.size()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = parameters.get(i).value();
+        }
+        return applyAsDouble(operands, operands.length);
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.token;
+
+import in.pratanumandal.expr4j.expression.ExpressionParameter;
+
+import java.util.List;
+
+/**
+ * The <code>DoubleUnaryOperation</code> interface represents an operation on one primitive double.<br>
+ * Operations implementing this interface are evaluated without boxing by a {@link in.pratanumandal.expr4j.expression.DoubleExpression},
+ * and can still be used by any other expression over doubles.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ */
+@FunctionalInterface
+public interface DoubleUnaryOperation extends EagerOperation<Double> {
+
+    /**
+     * Apply the operation.
+     *
+     * @param operand The operand
+     * @return The result
+     */
+    double applyAsDouble(double operand);
+
+    /**
+     * Apply the operation to a vector of operands.<br>
+     * This is used by batch evaluation. The default implementation applies the operation to one operand at a time;
+     * implementations may override it with a loop that is cheaper per element.
+     *
+     * @param operands The operands
+     * @param results Array to store the results
+     * @param count Number of operands, which may be less than the length of the arrays
+     */
+    default void applyAsDouble(double[] operands, double[] results, int count) {
+        for (int i = 0; i < count; i++) {
+            results[i] = applyAsDouble(operands[i]);
+        }
+    }
+
+    @Override
+    default Double execute(List<ExpressionParameter<Double>> parameters) {
+        return applyAsDouble(parameters.get(0).value());
+    }
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.token;
+
+/**
+ * The <code>EagerOperation&lt;T&gt;</code> interface represents an operation that evaluates all of its parameters.<br>
+ * Every time it is executed, an eager operation requests the value of each of its parameters, unless one of them throws.
+ * Its operands can therefore be evaluated before the operation is called, for example bottom-up with an explicit stack,
+ * or concurrently. Operations that may skip some of their parameters, such as conditionals, must not implement this interface;
+ * they are always passed lazy parameters.<br><br>
+ *
+ * A lambda is declared eager by its target type, for example
+ * <code>(EagerOperation&lt;Integer&gt;) parameters -&gt; parameters.get(0).value() + parameters.get(1).value()</code>.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+@FunctionalInterface
+public interface EagerOperation<T> extends Operation<T> {
+
+}
@@ -17,6 +17,8 @@
 
 package in.pratanumandal.expr4j.token;
 
+import in.pratanumandal.expr4j.cache.CacheStats;
+import in.pratanumandal.expr4j.cache.ConcurrentCache;
 import in.pratanumandal.expr4j.exception.Expr4jException;
 import in.pratanumandal.expr4j.expression.ExpressionParameter;
 
@@ -51,17 +53,25 @@ public class Function<T> implements Token {
 	 * Operation performed by the function.
 	 */
 	public final Operation<T> operation;
+
+	/**
+	 * Flag to indicate that the function is pure, i.e, deterministic and free of side effects.<br>
+	 * Pure functions whose parameters are all known can be evaluated when the expression is built.
+	 */
+	public final boolean pure;
 	
 	/**
 	 * Parameterized constructor.
 	 * 
 	 * @param label Label of the function
 	 * @param parameters Number of parameters
+	 * @param pure Whether the function is pure
 	 * @param operation Operation performed by the function
 	 */
-	public Function(String label, int parameters, Operation<T> operation) {
+	public Function(String label, int parameters, boolean pure, Operation<T> operation) {
 		this.label = label;
 		this.parameters = parameters;
+		this.pure = pure;
 		this.operation = operation;
 
 		if (this.parameters < Function.VARIABLE_PARAMETERS) {
@@ -69,15 +79,94 @@ public class Function<T> implements Token {
 		}
 	}
 	
+	/**
+	 * Parameterized constructor.<br>
+	 * This constructor creates a function that is not pure.
+	 * 
+	 * @param label Label of the function
+	 * @param parameters Number of parameters
+	 * @param operation Operation performed by the function
+	 */
+	public Function(String label, int parameters, Operation<T> operation) {
+		this(label, parameters, false, operation);
+	}
+
 	/**
 	 * Parameterized constructor.<br>
 	 * This constructor creates a function with variable number of parameters.
 	 * 
 	 * @param label Label of the function
+	 * @param pure Whether the function is pure
+	 * @param operation Operation performed by the function
+	 */
+	public Function(String label, boolean pure, Operation<T> operation) {
+		this(label, VARIABLE_PARAMETERS, pure, operation);
+	}
+
+	/**
+	 * Parameterized constructor.<br>
+	 * This constructor creates a function with variable number of parameters that is not pure.
+	 * 
+	 * @param label Label of the function
 	 * @param operation Operation performed by the function
 	 */
 	public Function(String label, Operation<T> operation) {
-		this(label, VARIABLE_PARAMETERS, operation);
+		this(label, VARIABLE_PARAMETERS, false, operation);
+	}
+
+	/**
+	 * Create a copy of this function whose results are cached, keyed on the values of its parameters.<br>
+	 * The operation itself is unchanged; it is wrapped by a {@link MemoizedOperation} which looks up the cache first.
+	 * Only pure functions can be memoized.
+	 * Add the returned function to the dictionary in place of this one.
+	 *
+	 * @param cache Cache of results, which may bound its entries and make them expire
+	 * @return The memoized function
+	 */
+	public Function<T> memoize(ConcurrentCache<List<T>, T> cache) {
+		if (!this.pure) {
+			throw new Expr4jException("Function must be pure to be memoized: " + this.label);
+		}
+		return new Function<>(this.label, this.parameters, true, new MemoizedOperation<>(this.operation, cache));
+	}
+
+	/**
+	 * Create a copy of this function whose results are cached, keyed on the values of its parameters.
+	 *
+	 * @param maximumSize The maximum number of results cached
+	 * @return The memoized function
+	 * @see #memoize(ConcurrentCache)
+	 */
+	public Function<T> memoize(long maximumSize) {
+		return memoize(new ConcurrentCache<>(maximumSize));
+	}
+
+	/**
+	 * Check if the results of this function are cached.
+	 *
+	 * @return True if memoized, false otherwise
+	 */
+	public boolean isMemoized() {
+		return this.operation instanceof MemoizedOperation;
+	}
+
+	/**
+	 * Check if the operation of this function evaluates all of its parameters.
+	 *
+	 * @return True if the operation is an {@link EagerOperation}, false otherwise
+	 */
+	public boolean isEager() {
+		return this.operation instanceof EagerOperation;
+	}
+
+	/**
+	 * Get a snapshot of the counters of the cache of results of this function, such as its hit rate.
+	 *
+	 * @return The counters if memoized, null otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	public CacheStats getCacheStats() {
+		return isMemoized() ? ((MemoizedOperation<T>) this.operation).stats() : null;
 	}
 
 	/**
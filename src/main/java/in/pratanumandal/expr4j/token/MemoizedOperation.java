@@ -0,0 +1,101 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j.token;
+
+import in.pratanumandal.expr4j.cache.CacheStats;
+import in.pratanumandal.expr4j.cache.ConcurrentCache;
+import in.pratanumandal.expr4j.expression.ExpressionParameter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>MemoizedOperation&lt;T&gt;</code> class caches the results of an operation keyed on the values of its parameters.<br>
+ * Every parameter is evaluated before the cache is looked up, so the operation no longer evaluates its parameters lazily and is an {@link EagerOperation}.
+ * The operation is called only on a miss, with the same parameters, and its result is cached unless it is null.
+ * Exceptions thrown by the operation are not cached.<br><br>
+ *
+ * The operation must be pure, since its result is reused for equal parameters.
+ * Memoized operations are created by {@link Function#memoize(ConcurrentCache)}.
+ *
+ * @author Pratanu Mandal
+ * @since 1.0
+ *
+ * @param <T> The type of operand
+ */
+public class MemoizedOperation<T> implements EagerOperation<T> {
+
+    /**
+     * The operation whose results are cached.
+     */
+    private final Operation<T> operation;
+
+    /**
+     * Cache of results keyed on the values of the parameters.
+     */
+    private final ConcurrentCache<List<T>, T> cache;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param operation The operation whose results are cached
+     * @param cache Cache of results keyed on the values of the parameters
+     */
+    public MemoizedOperation(Operation<T> operation, ConcurrentCache<List<T>, T> cache) {
+        this.operation = operation;
+        this.cache = cache;
+    }
+
+    /**
+     * Get the operation whose results are cached.
+     *
+     * @return The operation
+     */
+    public Operation<T> getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the cache of results.
+     *
+     * @return The cache
+     */
+    public ConcurrentCache<List<T>, T> getCache() {
+        return cache;
+    }
+
+    /**
+     * Get a snapshot of the counters of the cache, such as its hit rate.
+     *
+     * @return The counters
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public T execute(List<ExpressionParameter<T>> parameters) {
+        List<T> key = new ArrayList<>(parameters.size());
+        for (ExpressionParameter<T> parameter : parameters) {
+            key.add(parameter.value());
+        }
+
+        return cache.get(key, values -> operation.execute(parameters));
+    }
+
+}
@@ -53,18 +53,26 @@ public class Operator<T> implements Token, Comparable<Operator<T>> {
 	 */
 	public final Operation<T> operation;
 
+	/**
+	 * Flag to indicate that the operator is pure, i.e, deterministic and free of side effects.<br>
+	 * Pure operators whose operands are all known can be evaluated when the expression is built.
+	 */
+	public final boolean pure;
+
 	/**
 	 * Parameterized constructor.
 	 * 
 	 * @param label Label of the operator
 	 * @param operatorType Type of the operator
 	 * @param precedence Precedence of the operator
+	 * @param pure Whether the operator is pure
 	 * @param operation Operation performed by the operator
 	 */
-	public Operator(String label, OperatorType operatorType, int precedence, Operation<T> operation) {
+	public Operator(String label, OperatorType operatorType, int precedence, boolean pure, Operation<T> operation) {
 		this.label = label;
 		this.type = operatorType;
 		this.precedence = precedence;
+		this.pure = pure;
 		this.operation = operation;
 		
 		if (this.precedence < 1) {
@@ -72,6 +80,28 @@ public class Operator<T> implements Token, Comparable<Operator<T>> {
 		}
 	}
 
+	/**
+	 * Parameterized constructor.<br>
+	 * This constructor creates an operator that is not pure.
+	 * 
+	 * @param label Label of the operator
+	 * @param operatorType Type of the operator
+	 * @param precedence Precedence of the operator
+	 * @param operation Operation performed by the operator
+	 */
+	public Operator(String label, OperatorType operatorType, int precedence, Operation<T> operation) {
+		this(label, operatorType, precedence, false, operation);
+	}
+
+	/**
+	 * Check if the operation of this operator evaluates all of its parameters.
+	 *
+	 * @return True if the operation is an {@link EagerOperation}, false otherwise
+	 */
+	public boolean isEager() {
+		return this.operation instanceof EagerOperation;
+	}
+
 	/**
 	 * Evaluate the function lazily.
 	 *
@@ -25,19 +25,40 @@ package in.pratanumandal.expr4j.token;
  *
  */
 public class Variable implements Token {
+
+	/**
+	 * Constant to indicate that the variable has not been assigned a slot.
+	 */
+	public static final int UNRESOLVED = -1;
 	
 	/**
 	 * Label of the variable.
 	 */
 	public final String label;
 
+	/**
+	 * Slot of the variable in the bindings of the expression.
+	 */
+	public final int slot;
+
 	/**
 	 * Parameterized constructor.
 	 * 
 	 * @param label Label of the variable
 	 */
 	public Variable(String label) {
+		this(label, UNRESOLVED);
+	}
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param label Label of the variable
+	 * @param slot Slot of the variable
+	 */
+	public Variable(String label, int slot) {
 		this.label = label;
+		this.slot = slot;
 	}
 
 	@Override
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.AsyncVariableResolver;
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.EvaluationExecutors;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncTest {
+
+	public static double DELTA = 0.00000000001;
+
+	protected ExpressionBuilder<Double> builder;
+	protected ExpressionDictionary<Double> expressionDictionary;
+
+	public AsyncTest() {
+		builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+			@Override
+			protected Double stringToOperand(String operand) {
+				return Double.parseDouble(operand);
+			}
+
+			@Override
+			protected String operandToString(Double operand) {
+				return operand == operand.intValue() ? String.valueOf(operand.intValue()) : String.valueOf(operand);
+			}
+		});
+
+		expressionDictionary = builder.getExpressionDictionary();
+
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, (DoubleUnaryOperation) (operand) -> -operand));
+
+		expressionDictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left + right));
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left - right));
+		expressionDictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left * right));
+		expressionDictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left / right));
+		expressionDictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, (DoubleBinaryOperation) Math::pow));
+
+		expressionDictionary.addFunction(new Function<>("sqrt", 1, (DoubleUnaryOperation) Math::sqrt));
+		expressionDictionary.addFunction(new Function<>("max", (DoubleNaryOperation) (operands, count) -> {
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				max = Math.max(max, operands[i]);
+			}
+			return max;
+		}));
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+
+		expressionDictionary.addConstant("pi", Math.PI);
+	}
+
+	private void assertEquals(double expected, double actual) {
+		Assertions.assertEquals(expected, actual, DELTA);
+	}
+
+	@Test
+	public void test1() throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		AtomicBoolean concurrent = new AtomicBoolean(true);
+		AtomicInteger calls = new AtomicInteger();
+
+		expressionDictionary.addFunction(new Function<>("slow", 1, (parameters) -> {
+			calls.incrementAndGet();
+			try {
+				// both calls must be running at the same time to pass the barrier
+				if (concurrent.get()) barrier.await(10, TimeUnit.SECONDS);
+			}
+			catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return parameters.get(0).value();
+		}));
+
+		Expression<Double> expression = builder.build("slow(x) * 2 + slow(y)");
+		Bindings<Double> bindings = expression.bindings().set("x", 3.0).set("y", 4.0);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			CompletableFuture<Double> future = expression.evaluateAsync(bindings, executor, true);
+			bindings.set("x", 100.0);
+			this.assertEquals(10.0, future.get(10, TimeUnit.SECONDS));
+			Assertions.assertEquals(2, calls.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		ExecutorService blocked = Executors.newSingleThreadExecutor();
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			blocked.execute(() -> {
+				try {
+					latch.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+
+			CompletableFuture<Double> future = expression.evaluateAsync(bindings, blocked, true);
+			future.cancel(false);
+			latch.countDown();
+		}
+		finally {
+			blocked.shutdown();
+		}
+
+		Assertions.assertTrue(blocked.awaitTermination(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(2, calls.get());
+
+		concurrent.set(false);
+		this.assertEquals(204.0, expression.evaluateAsync(bindings, ForkJoinPool.commonPool()).get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void test2() throws Exception {
+		Map<String, Double> store = new HashMap<>();
+		store.put("x", 1.0);
+		store.put("a", 2.0);
+		store.put("b", 3.0);
+		store.put("c", 4.0);
+
+		List<Set<String>> batches = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch requested = new CountDownLatch(3);
+
+		AsyncVariableResolver<Double> resolver = (labels) -> {
+			batches.add(new HashSet<>(labels));
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					// hold the first batch until every variable has been requested
+					if (batches.size() == 1 && requested.await(10, TimeUnit.SECONDS)) Thread.sleep(100);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				Map<String, Double> values = new HashMap<>();
+				for (String label : labels) {
+					if (store.containsKey(label)) values.put(label, store.get(label));
+				}
+				return values;
+			});
+		};
+
+		expressionDictionary.addFunction(new Function<>("fetch", 1, (parameters) -> {
+			requested.countDown();
+			return parameters.get(0).value();
+		}));
+
+		ExecutorService executor = EvaluationExecutors.newVirtualThreadExecutor();
+		try {
+			// variables requested while a batch is in flight are fetched together
+			Expression<Double> fanOut = builder.build("fetch(a) + fetch(b) + fetch(c)");
+			this.assertEquals(9.0, fanOut.evaluateAsync(fanOut.bindings(), resolver, executor, true).get(10, TimeUnit.SECONDS));
+			Assertions.assertEquals(2, batches.size());
+			Assertions.assertEquals(1, batches.get(0).size());
+			Assertions.assertEquals(2, batches.get(1).size());
+
+			// only the variables on the branch taken are fetched
+			batches.clear();
+			Expression<Double> branch = builder.build("if(x, a, c + d) * b");
+			this.assertEquals(6.0, branch.evaluateAsync(resolver, executor).get(10, TimeUnit.SECONDS));
+			Assertions.assertEquals(Arrays.asList(set("x"), set("a"), set("b")), batches);
+
+			// bound variables are not fetched, and missing variables are reported when reached
+			batches.clear();
+			Expression<Double> missing = builder.build("if(x, d, a)");
+			try {
+				missing.evaluateAsync(missing.bindings().set("x", 1.0), resolver, executor, false).get(10, TimeUnit.SECONDS);
+				Assertions.fail("Expected Expr4jException");
+			}
+			catch (ExecutionException e) {
+				Assertions.assertTrue(e.getCause() instanceof Expr4jException);
+				Assertions.assertEquals("Variable not found: d", e.getCause().getMessage());
+			}
+			Assertions.assertEquals(Collections.singletonList(set("d")), batches);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void test3() throws Exception {
+		Map<String, Double> store = new HashMap<>();
+		store.put("x", 1.0);
+		store.put("a", 2.0);
+		store.put("b", 3.0);
+		store.put("c", 4.0);
+		store.put("d", 5.0);
+
+		List<String> requested = Collections.synchronizedList(new ArrayList<>());
+		AsyncVariableResolver<Double> resolver = (labels) -> {
+			requested.addAll(labels);
+			Map<String, Double> values = new HashMap<>();
+			for (String label : labels) {
+				if (store.containsKey(label)) values.put(label, store.get(label));
+			}
+			return CompletableFuture.completedFuture(values);
+		};
+
+		expressionDictionary.addFunction(new Function<>("fetch", 1, (parameters) -> parameters.get(0).value()));
+
+		ExecutorService executor = EvaluationExecutors.newVirtualThreadExecutor();
+		try {
+			// operands of a lazy operation are not evaluated speculatively, even when they call functions
+			Expression<Double> branch = builder.build("if(x, fetch(a) + fetch(b), fetch(c) + fetch(d)) + fetch(b)");
+			this.assertEquals(8.0, branch.evaluateAsync(branch.bindings(), resolver, executor, true).get(10, TimeUnit.SECONDS));
+			Assertions.assertEquals(set("x", "a", "b"), new HashSet<>(requested));
+
+			requested.clear();
+			store.put("x", 0.0);
+			this.assertEquals(12.0, branch.evaluateAsync(branch.bindings(), resolver, executor, true).get(10, TimeUnit.SECONDS));
+			Assertions.assertEquals(set("x", "b", "c", "d"), new HashSet<>(requested));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Set<String> set(String... labels) {
+		return new HashSet<>(Arrays.asList(labels));
+	}
+
+}
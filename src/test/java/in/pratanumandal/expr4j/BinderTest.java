@@ -0,0 +1,144 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.expression.ObjectBinder;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+public class BinderTest {
+
+	public static double DELTA = 0.00000000001;
+
+	protected ExpressionBuilder<Double> builder;
+	protected ExpressionDictionary<Double> expressionDictionary;
+
+	public BinderTest() {
+		builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+			@Override
+			protected Double stringToOperand(String operand) {
+				return Double.parseDouble(operand);
+			}
+
+			@Override
+			protected String operandToString(Double operand) {
+				return operand == operand.intValue() ? String.valueOf(operand.intValue()) : String.valueOf(operand);
+			}
+		});
+
+		expressionDictionary = builder.getExpressionDictionary();
+
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, (DoubleUnaryOperation) (operand) -> -operand));
+
+		expressionDictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left + right));
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left - right));
+		expressionDictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left * right));
+		expressionDictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left / right));
+		expressionDictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, (DoubleBinaryOperation) Math::pow));
+
+		expressionDictionary.addFunction(new Function<>("sqrt", 1, (DoubleUnaryOperation) Math::sqrt));
+		expressionDictionary.addFunction(new Function<>("max", (DoubleNaryOperation) (operands, count) -> {
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				max = Math.max(max, operands[i]);
+			}
+			return max;
+		}));
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+
+		expressionDictionary.addConstant("pi", Math.PI);
+	}
+
+	private void assertEquals(double expected, double actual) {
+		Assertions.assertEquals(expected, actual, DELTA);
+	}
+
+	@Test
+	public void test1() {
+		Expression<Double> expression = builder.build("if(active, price * quantity, 0) - discount");
+		ObjectBinder<Order, Double> binder = new ObjectBinder<>(expression, Order.class, Double.class);
+
+		this.assertEquals(27.0, binder.evaluate(new Order(1.0, 10.0, 3.0, 3.0)));
+		this.assertEquals(-3.0, binder.evaluate(new Order(0.0, 10.0, 3.0, 3.0)));
+
+		Bindings<Double> bindings = expression.bindings();
+		this.assertEquals(9.5, binder.evaluate(new Order(1.0, 2.5, 4.0, 0.5), bindings));
+
+		Expr4jException unknown = Assertions.assertThrows(Expr4jException.class,
+				() -> new ObjectBinder<>(builder.build("price * tax"), Order.class, Double.class));
+		Assertions.assertEquals("No member found for variable tax in " + Order.class.getName(), unknown.getMessage());
+
+		Assertions.assertThrows(Expr4jException.class, () -> new ObjectBinder<>(builder.build("price * id"), Order.class, Double.class));
+	}
+
+	private static class Base {
+
+		private final double discount;
+
+		private Base(double discount) {
+			this.discount = discount;
+		}
+
+	}
+
+	private static class Order extends Base {
+
+		public final double active;
+
+		private final double price;
+
+		private final double quantity;
+
+		private final int id = 1;
+
+		private Order(double active, double price, double quantity, double discount) {
+			super(discount);
+			this.active = active;
+			this.price = price;
+			this.quantity = quantity;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public Double quantity() {
+			return quantity;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+	}
+
+}
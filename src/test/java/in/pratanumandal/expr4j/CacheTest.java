@@ -0,0 +1,281 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j;
+
+import in.pratanumandal.expr4j.cache.CacheStats;
+import in.pratanumandal.expr4j.cache.ConcurrentCache;
+import in.pratanumandal.expr4j.cache.Weigher;
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CacheTest {
+
+	public static double DELTA = 0.00000000001;
+
+	protected ExpressionBuilder<Double> builder;
+	protected ExpressionDictionary<Double> expressionDictionary;
+
+	public CacheTest() {
+		builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+			@Override
+			protected Double stringToOperand(String operand) {
+				return Double.parseDouble(operand);
+			}
+
+			@Override
+			protected String operandToString(Double operand) {
+				return operand == operand.intValue() ? String.valueOf(operand.intValue()) : String.valueOf(operand);
+			}
+		});
+
+		expressionDictionary = builder.getExpressionDictionary();
+
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, (DoubleUnaryOperation) (operand) -> -operand));
+
+		expressionDictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left + right));
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left - right));
+		expressionDictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left * right));
+		expressionDictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left / right));
+		expressionDictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, (DoubleBinaryOperation) Math::pow));
+
+		expressionDictionary.addFunction(new Function<>("sqrt", 1, (DoubleUnaryOperation) Math::sqrt));
+		expressionDictionary.addFunction(new Function<>("max", (DoubleNaryOperation) (operands, count) -> {
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				max = Math.max(max, operands[i]);
+			}
+			return max;
+		}));
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+
+		expressionDictionary.addConstant("pi", Math.PI);
+	}
+
+	private void assertEquals(double expected, double actual) {
+		Assertions.assertEquals(expected, actual, DELTA);
+	}
+
+	@Test
+	public void test1() {
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(10);
+
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, String.valueOf(i));
+
+			// keep the first entry in use
+			Assertions.assertEquals("0", cache.getIfPresent(0));
+		}
+
+		Assertions.assertEquals(10, cache.size());
+		Assertions.assertEquals("0", cache.getIfPresent(0));
+		Assertions.assertEquals("99", cache.get(99, String::valueOf));
+		Assertions.assertNull(cache.getIfPresent(50));
+
+		CacheStats stats = cache.stats();
+		Assertions.assertEquals(90, stats.getEvictionCount());
+		Assertions.assertEquals(1, stats.getMissCount());
+	}
+
+	@Test
+	public void test2() {
+		ConcurrentCache<String, String> cache = new ConcurrentCache<>(10, (key, value) -> key.length());
+
+		cache.put("abcd", "1");
+		cache.put("efgh", "2");
+		cache.put("ijkl", "3");
+		cache.put("too long to cache", "4");
+
+		Assertions.assertEquals(2, cache.size());
+		Assertions.assertEquals(8, cache.weight());
+		Assertions.assertNull(cache.getIfPresent("too long to cache"));
+
+		cache.invalidateAll();
+
+		Assertions.assertEquals(0, cache.size());
+		Assertions.assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void test3() {
+		AtomicLong time = new AtomicLong();
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(10, Weigher.SINGLETON, 5, TimeUnit.SECONDS, time::get);
+		Assertions.assertEquals(5000, cache.getExpireAfterWrite(TimeUnit.MILLISECONDS));
+
+		cache.put(1, "1");
+		time.addAndGet(TimeUnit.SECONDS.toNanos(3));
+		cache.put(2, "2");
+		Assertions.assertEquals("1", cache.getIfPresent(1));
+
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		Assertions.assertNull(cache.getIfPresent(1));
+		Assertions.assertEquals("2", cache.getIfPresent(2));
+		Assertions.assertEquals(1, cache.size());
+
+		time.addAndGet(TimeUnit.SECONDS.toNanos(3));
+		Assertions.assertEquals("two", cache.get(2, key -> "two"));
+
+		CacheStats stats = cache.stats();
+		Assertions.assertEquals(2, stats.getEvictionCount());
+		Assertions.assertEquals(2, stats.getHitCount());
+		Assertions.assertEquals(2, stats.getMissCount());
+
+		Assertions.assertThrows(Expr4jException.class, () -> new ConcurrentCache<>(10, 0, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void test4() throws InterruptedException {
+		AtomicLong time = new AtomicLong();
+		ConcurrentCache<Integer, Object> cache = new ConcurrentCache<>(10, Weigher.SINGLETON, 1, TimeUnit.SECONDS, time::get);
+
+		Object replaced = new Object();
+		Object invalidated = new Object();
+		Object expired = new Object();
+		List<WeakReference<Object>> references = Arrays.asList(new WeakReference<>(replaced), new WeakReference<>(invalidated), new WeakReference<>(expired));
+
+		cache.put(0, replaced);
+		cache.put(0, new Object());
+		cache.put(1, invalidated);
+		cache.invalidate(1);
+		cache.put(2, expired);
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		Assertions.assertNull(cache.getIfPresent(2));
+		replaced = invalidated = expired = null;
+
+		// entries no longer mapped are dropped by later writes, so the cache does not keep their values reachable
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i % 5, new Object());
+			cache.invalidate(5 + i % 3);
+		}
+		Assertions.assertEquals(5, cache.size());
+		Assertions.assertEquals(5, cache.weight());
+
+		for (int i = 0; i < 20 && references.stream().anyMatch(reference -> reference.get() != null); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		for (WeakReference<Object> reference : references) {
+			Assertions.assertNull(reference.get());
+		}
+	}
+
+	@Test
+	public void test5() {
+		AtomicInteger calls = new AtomicInteger();
+		Function<Double> integrate = new Function<>("integrate", 2, true, (DoubleBinaryOperation) (from, to) -> {
+			calls.incrementAndGet();
+			return (to * to - from * from) / 2;
+		});
+
+		Assertions.assertThrows(Expr4jException.class, () -> new Function<Double>("next", 0, (parameters) -> 0.0).memoize(10));
+
+		Function<Double> memoized = integrate.memoize(4);
+		Assertions.assertTrue(memoized.isMemoized());
+		Assertions.assertFalse(integrate.isMemoized());
+		expressionDictionary.addFunction(memoized);
+
+		Expression<Double> expression = builder.build("integrate(0, x) + integrate(x, 2 * x)");
+		for (int i = 0; i < 10; i++) {
+			this.assertEquals(2.0 * (i % 2 + 1) * (i % 2 + 1), expression.evaluate(Collections.singletonMap("x", (double) (i % 2 + 1))));
+		}
+
+		// each of the four argument lists is computed once
+		Assertions.assertEquals(4, calls.get());
+		CacheStats stats = expressionDictionary.getFunction("integrate").getCacheStats();
+		Assertions.assertEquals(20, stats.getRequestCount());
+		Assertions.assertEquals(0.8, stats.getHitRate(), DELTA);
+	}
+
+	@Test
+	public void test6() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		expressionDictionary.addFunction(new Function<>("hypot", 2, true, (DoubleBinaryOperation) (x, y) -> {
+			calls.incrementAndGet();
+			return Math.hypot(x, y);
+		}));
+
+		Assertions.assertThrows(Expr4jException.class, () -> builder.build("x + y").setResultCache(new ConcurrentCache<>(10)));
+
+		Expression<Double> expression = builder.build("hypot(x, y)");
+		expression.setResultCache(new ConcurrentCache<>(100, 1, TimeUnit.MINUTES));
+
+		// variables the expression does not reference are not part of the key
+		Map<String, Double> variables = new HashMap<>();
+		variables.put("x", 3.0);
+		variables.put("y", 4.0);
+		for (int i = 0; i < 5; i++) {
+			variables.put("unused", (double) i);
+			this.assertEquals(5.0, expression.evaluate(variables));
+		}
+		Assertions.assertEquals(1, calls.get());
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(CompletableFuture.runAsync(() -> {
+					Bindings<Double> bindings = expression.bindings();
+					for (int i = 0; i < 1000; i++) {
+						double x = i % 10;
+						this.assertEquals(Math.hypot(x, 1), expression.evaluate(bindings.set("x", x).set("y", 1.0)));
+					}
+				}, executor));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		CacheStats stats = expression.getResultCache().stats();
+		Assertions.assertEquals(8005, stats.getRequestCount());
+		Assertions.assertEquals(stats.getMissCount(), calls.get());
+		Assertions.assertTrue(calls.get() <= 1 + 8 * 10);
+
+		// unbound variables bypass the cache
+		Assertions.assertThrows(Expr4jException.class, () -> expression.evaluate(Collections.singletonMap("x", 1.0)));
+		Assertions.assertEquals(8005, expression.getResultCache().stats().getRequestCount());
+	}
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j;
+
+import in.pratanumandal.expr4j.compiler.BytecodeCompiler;
+import in.pratanumandal.expr4j.compiler.ClosureCompiler;
+import in.pratanumandal.expr4j.compiler.RpnCompiler;
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.EvaluationContext;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionCompiler;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.token.EagerOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompilerTest {
+
+	protected ExpressionBuilder<Integer> builder;
+	protected ExpressionDictionary<Integer> expressionDictionary;
+
+	public CompilerTest() {
+		builder = new ExpressionBuilder<>(new ExpressionConfig<Integer>() {
+			@Override
+			protected Integer stringToOperand(String operand) {
+				return Integer.parseInt(operand);
+			}
+
+			@Override
+			protected String operandToString(Integer operand) {
+				return String.valueOf(operand);
+			}
+
+			@Override
+			protected List<String> getOperandPattern() {
+				return Arrays.asList("\\d+");
+			}
+		});
+
+		expressionDictionary = builder.getExpressionDictionary();
+
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, (parameters) -> -parameters.get(0).value()));
+
+		expressionDictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, (EagerOperation<Integer>) (parameters) -> parameters.get(0).value() + parameters.get(1).value()));
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, (EagerOperation<Integer>) (parameters) -> parameters.get(0).value() - parameters.get(1).value()));
+		expressionDictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, (EagerOperation<Integer>) (parameters) -> parameters.get(0).value() * parameters.get(1).value()));
+		expressionDictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, (EagerOperation<Integer>) (parameters) -> parameters.get(0).value() / parameters.get(1).value()));
+
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+		expressionDictionary.addFunction(new Function<>("add", (parameters) -> {
+			int sum = 0;
+			for (int i = 0; i < parameters.size(); i++) {
+				sum += parameters.get(i).value();
+			}
+			return sum;
+		}));
+
+		expressionDictionary.addConstant("ten", 10);
+	}
+
+	private void assertCompiled(ExpressionCompiler compiler) {
+		builder.setExpressionCompiler(compiler);
+
+		Map<String, Integer> variables = new HashMap<>();
+		variables.put("x", 7);
+
+		Expression<Integer> expression = builder.build("if(x - 7, y, add(-x, ten * 2, 3) / 2)");
+
+		Assertions.assertTrue(expression.isCompiled());
+		Assertions.assertEquals(8, expression.evaluate(variables));
+		Assertions.assertEquals("if(x - 7, y, add(-x, ten * 2, 3) / 2)", expression.toString());
+
+		variables.put("x", 1);
+		variables.put("y", 42);
+		Assertions.assertEquals(42, expression.evaluate(variables));
+	}
+
+	@Test
+	public void test1() {
+		this.assertCompiled(new ClosureCompiler());
+	}
+
+	@Test
+	public void test2() {
+		this.assertCompiled(new BytecodeCompiler());
+	}
+
+	@Test
+	public void test3() {
+		builder.setExpressionCompiler(new BytecodeCompiler());
+
+		Expression<Integer> expression = builder.build("if(1, add(y, 1), 2)");
+		EvaluationContext context = new EvaluationContext();
+
+		Assertions.assertThrows(Expr4jException.class, () -> expression.evaluate(expression.bindings(), context));
+		Assertions.assertEquals(0, context.depth());
+
+		// parameters popped out of order leave the context unchanged
+		List<?> outer = context.push((target, bindings, ctx) -> 0, Arrays.asList(1, 2), expression.bindings());
+		List<?> inner = context.push((target, bindings, ctx) -> 0, Arrays.asList(3), expression.bindings());
+		Assertions.assertThrows(Expr4jException.class, () -> context.pop(outer));
+		Assertions.assertEquals(2, context.depth());
+		context.pop(inner);
+		context.pop(outer);
+		Assertions.assertEquals(0, context.depth());
+	}
+
+	@Test
+	public void test4() {
+		this.assertCompiled(new RpnCompiler());
+	}
+
+	@Test
+	public void test5() {
+		builder.setExpressionCompiler(new RpnCompiler());
+
+		List<Integer> calls = new ArrayList<>();
+		expressionDictionary.addFunction(new Function<>("probe", 1, (EagerOperation<Integer>) (parameters) -> {
+			calls.add(parameters.get(0).value());
+			return parameters.get(0).value();
+		}));
+
+		Expression<Integer> expression = builder.build("probe(x) * 2 + if(x, probe(x + 1), add(probe(x + 2), y)) + probe(3)");
+		Assertions.assertTrue(expression.isCompiled());
+
+		Map<String, Integer> variables = new HashMap<>();
+		variables.put("x", 1);
+		Assertions.assertEquals(7, expression.evaluate(variables));
+		Assertions.assertEquals(Arrays.asList(1, 2, 3), calls);
+
+		// the exception of a lazy operand leaves the value stack of the thread balanced
+		calls.clear();
+		variables.put("x", 0);
+		Assertions.assertThrows(Expr4jException.class, () -> expression.evaluate(variables));
+		Assertions.assertEquals(Arrays.asList(0, 2), calls);
+
+		calls.clear();
+		variables.put("y", 10);
+		Assertions.assertEquals(15, expression.evaluate(variables));
+		Assertions.assertEquals(Arrays.asList(0, 2, 3), calls);
+	}
+
+	@Test
+	public void test6() {
+		AtomicInteger calls = new AtomicInteger();
+		expressionDictionary.addFunction(new Function<>("f", 1, true, (parameters) -> {
+			calls.incrementAndGet();
+			return parameters.get(0).value() * 2;
+		}));
+
+		Map<String, Integer> variables = Collections.singletonMap("x", 3);
+
+		// every backend evaluates a shared subexpression once per evaluation, even across lazy operands
+		for (ExpressionCompiler compiler : Arrays.asList(null, new ClosureCompiler(), new BytecodeCompiler(), new RpnCompiler())) {
+			builder.setExpressionCompiler(compiler);
+
+			Expression<Integer> expression = builder.build("f(x) + f(x) + f(x)");
+			Assertions.assertEquals(compiler != null, expression.isCompiled());
+			Assertions.assertEquals(1, expression.getSharedCount());
+
+			calls.set(0);
+			Assertions.assertEquals(18, expression.evaluate(variables));
+			Assertions.assertEquals(1, calls.get());
+			Assertions.assertEquals(18, expression.evaluate(variables));
+			Assertions.assertEquals(2, calls.get());
+
+			expression = builder.build("if(x, f(f(x)), 0) + f(f(x)) * f(x)");
+			Assertions.assertEquals(2, expression.getSharedCount());
+
+			calls.set(0);
+			Assertions.assertEquals(84, expression.evaluate(variables));
+			Assertions.assertEquals(2, calls.get());
+		}
+	}
+
+}
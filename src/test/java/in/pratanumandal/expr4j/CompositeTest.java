@@ -1,5 +1,7 @@
 package in.pratanumandal.expr4j;
 
+import in.pratanumandal.expr4j.expression.Bindings;
+import in.pratanumandal.expr4j.expression.EvaluationContext;
 import in.pratanumandal.expr4j.expression.Expression;
 import in.pratanumandal.expr4j.expression.ExpressionBuilder;
 import in.pratanumandal.expr4j.expression.ExpressionConfig;
@@ -10,6 +12,7 @@ import in.pratanumandal.expr4j.token.OperatorType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -183,4 +186,53 @@ public class CompositeTest {
         Assertions.assertEquals(expectedString, actualString);
     }
 
+    @Test
+    public void test4() {
+        Expression<Composite> expression = builder.build("if(x < 0.5, y - 1, switch(2, y, x + 1))");
+        Bindings<Composite> bindings = expression.bindings();
+        EvaluationContext context = EvaluationContext.current();
+
+        bindings.set("x", new Composite(0.6));
+        this.assertEquals(1.6, expression.evaluate(bindings, context).doubleValue());
+
+        bindings.set("x", new Composite(0.2)).set("y", new Composite(5));
+        this.assertEquals(4.0, expression.evaluate(bindings, context).doubleValue());
+
+        Assertions.assertEquals(0, context.depth());
+
+        // the parameters and their list are recycled across evaluations with the same context
+        List<Object> seen = new ArrayList<>();
+        expressionDictionary.addFunction(new Function<>("probe", 2, (parameters) -> {
+            seen.add(parameters);
+            seen.add(parameters.get(0));
+            seen.add(parameters.get(1));
+            return parameters.get(0).value();
+        }));
+
+        Expression<Composite> probe = builder.build("probe(x, y) + 1");
+        Bindings<Composite> probeBindings = probe.bindings().set("x", new Composite(1)).set("y", new Composite(2));
+        for (int i = 0; i < 3; i++) {
+            this.assertEquals(2.0, probe.evaluate(probeBindings, context).doubleValue());
+        }
+
+        Assertions.assertEquals(9, seen.size());
+        for (int i = 3; i < seen.size(); i++) {
+            Assertions.assertSame(seen.get(i % 3), seen.get(i));
+        }
+        Assertions.assertNotSame(seen.get(1), seen.get(2));
+        Assertions.assertEquals(0, context.depth());
+
+        // evaluating without a context recycles them from the context of the current thread
+        seen.clear();
+        for (int i = 0; i < 3; i++) {
+            this.assertEquals(2.0, probe.evaluate(probeBindings).doubleValue());
+        }
+
+        Assertions.assertEquals(9, seen.size());
+        for (int i = 3; i < seen.size(); i++) {
+            Assertions.assertSame(seen.get(i % 3), seen.get(i));
+        }
+        Assertions.assertEquals(0, EvaluationContext.current().depth());
+    }
+
 }
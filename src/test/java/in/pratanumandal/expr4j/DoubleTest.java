@@ -0,0 +1,321 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.BatchError;
+import in.pratanumandal.expr4j.expression.DoubleExpression;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.expression.ParallelBatchEvaluator;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DoubleTest {
+
+	public static double DELTA = 0.00000000001;
+
+	protected ExpressionBuilder<Double> builder;
+	protected ExpressionDictionary<Double> expressionDictionary;
+
+	public DoubleTest() {
+		builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+			@Override
+			protected Double stringToOperand(String operand) {
+				return Double.parseDouble(operand);
+			}
+
+			@Override
+			protected String operandToString(Double operand) {
+				return operand == operand.intValue() ? String.valueOf(operand.intValue()) : String.valueOf(operand);
+			}
+		});
+
+		expressionDictionary = builder.getExpressionDictionary();
+
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, (DoubleUnaryOperation) (operand) -> -operand));
+
+		expressionDictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left + right));
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left - right));
+		expressionDictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left * right));
+		expressionDictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left / right));
+		expressionDictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, (DoubleBinaryOperation) Math::pow));
+
+		expressionDictionary.addFunction(new Function<>("sqrt", 1, (DoubleUnaryOperation) Math::sqrt));
+		expressionDictionary.addFunction(new Function<>("max", (DoubleNaryOperation) (operands, count) -> {
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				max = Math.max(max, operands[i]);
+			}
+			return max;
+		}));
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+
+		expressionDictionary.addConstant("pi", Math.PI);
+	}
+
+	private void assertEquals(double expected, double actual) {
+		Assertions.assertEquals(expected, actual, DELTA);
+	}
+
+	@Test
+	public void test1() {
+		Map<String, Double> variables = new HashMap<>();
+		variables.put("x", 3.0);
+		variables.put("y", 4.0);
+
+		double expected = 1 + Math.PI;
+		String expectedString = "sqrt(x ^ 2 + y ^ 2) / (1 + max(x, y, 2, -1)) + pi";
+
+		Expression<Double> expression = builder.build("sqrt(x^2 + y^2) / (1 + max(x, y, 2, -1)) + pi");
+		DoubleExpression doubleExpression = new DoubleExpression(expression);
+
+		this.assertEquals(expected, expression.evaluate(variables));
+		this.assertEquals(expected, doubleExpression.evaluateAsDouble(3.0, 4.0));
+		Assertions.assertEquals(expectedString, doubleExpression.toString());
+	}
+
+	@Test
+	public void test2() {
+		Expression<Double> expression = builder.build("if(x, 1 / x, y - 1)");
+		DoubleExpression doubleExpression = new DoubleExpression(expression);
+
+		double[] slots = new double[doubleExpression.getVariables().size()];
+
+		slots[doubleExpression.getSlot("x")] = 4;
+		this.assertEquals(0.25, doubleExpression.evaluateAsDouble(slots));
+
+		slots[doubleExpression.getSlot("x")] = 0;
+		slots[doubleExpression.getSlot("y")] = 3;
+		this.assertEquals(2, doubleExpression.evaluateAsDouble(slots));
+	}
+
+	@Test
+	public void test3() {
+		Expression<Double> expression = builder.build("sqrt(x^2 + y^2) / max(x, y, 1) + if(x - 1000, -x, y)");
+		DoubleExpression doubleExpression = new DoubleExpression(expression);
+
+		int rows = 2 * DoubleExpression.BATCH_SIZE + 100;
+
+		double[][] columns = new double[2][rows];
+		for (int i = 0; i < rows; i++) {
+			columns[doubleExpression.getSlot("x")][i] = i;
+			columns[doubleExpression.getSlot("y")][i] = rows - i;
+		}
+
+		double[] results = new double[rows];
+		doubleExpression.evaluateBatch(columns, results);
+
+		for (int i = 0; i < rows; i++) {
+			this.assertEquals(doubleExpression.evaluateAsDouble(columns[0][i], columns[1][i]), results[i]);
+		}
+
+		Assertions.assertThrows(Expr4jException.class, () -> doubleExpression.evaluateBatch(new double[1][rows], results));
+	}
+
+	@Test
+	public void test4() {
+		expressionDictionary.addFunction(new Function<>("check", 1, (parameters) -> {
+			double value = parameters.get(0).value();
+			if (value % 1000 == 7) {
+				throw new IllegalArgumentException("Invalid value: " + value);
+			}
+			return value;
+		}));
+
+		DoubleExpression first = new DoubleExpression(builder.build("check(x) * 2"));
+		DoubleExpression second = new DoubleExpression(builder.build("y - x"));
+
+		int rows = 100000;
+
+		Map<String, double[]> columns = new HashMap<>();
+		columns.put("x", new double[rows]);
+		columns.put("y", new double[rows]);
+		for (int i = 0; i < rows; i++) {
+			columns.get("x")[i] = i;
+			columns.get("y")[i] = 2 * i;
+		}
+
+		double[][] results = new double[2][rows];
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		List<BatchError> errors;
+		try {
+			ParallelBatchEvaluator evaluator = new ParallelBatchEvaluator(pool, 1000);
+			errors = evaluator.evaluate(Arrays.asList(first, second), columns, results);
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		Assertions.assertEquals(rows / 1000, errors.size());
+		for (int i = 0; i < errors.size(); i++) {
+			Assertions.assertEquals(0, errors.get(i).getExpression());
+			Assertions.assertEquals(i * 1000 + 7, errors.get(i).getRow());
+			Assertions.assertTrue(errors.get(i).getException() instanceof IllegalArgumentException);
+		}
+
+		for (int i = 0; i < rows; i++) {
+			if (i % 1000 == 7) {
+				Assertions.assertTrue(Double.isNaN(results[0][i]));
+			}
+			else {
+				this.assertEquals(2 * i, results[0][i]);
+			}
+			this.assertEquals(i, results[1][i]);
+		}
+
+		// only the batch holding the failing row is evaluated again
+		AtomicInteger calls = new AtomicInteger();
+		expressionDictionary.addFunction(new Function<>("count", 1, (parameters) -> {
+			calls.incrementAndGet();
+			double value = parameters.get(0).value();
+			if (value == 5000) {
+				throw new IllegalArgumentException("Invalid value: " + value);
+			}
+			return value;
+		}));
+		DoubleExpression third = new DoubleExpression(builder.build("count(x) + 1"));
+
+		rows = 10 * DoubleExpression.BATCH_SIZE;
+		double[] thirdResults = new double[rows];
+		errors = new ParallelBatchEvaluator(ForkJoinPool.commonPool(), rows).evaluate(third, new double[][] { columns.get("x") }, thirdResults);
+
+		Assertions.assertEquals(1, errors.size());
+		Assertions.assertEquals(5000, errors.get(0).getRow());
+		Assertions.assertTrue(calls.get() <= rows + DoubleExpression.BATCH_SIZE);
+	}
+
+	@Test
+	public void test5() {
+		int count = 100000;
+
+		// trees too tall to compile are evaluated by the iterative tree evaluator
+		DoubleExpression doubleExpression = new DoubleExpression(builder.build(String.join(" + ", Collections.nCopies(count, "x"))));
+		this.assertEquals(2.0 * count, doubleExpression.evaluateAsDouble(2));
+
+		double[][] columns = { { 1, 2, 3 } };
+		double[] results = new double[3];
+		doubleExpression.evaluateBatch(columns, results);
+		for (int i = 0; i < results.length; i++) {
+			this.assertEquals(columns[0][i] * count, results[i]);
+		}
+
+		// null operands are rejected when the expression is compiled, whether or not it is too tall to compile
+		expressionDictionary.addConstant("nothing", null);
+		Assertions.assertThrows(Expr4jException.class, () -> new DoubleExpression(builder.build("x + nothing")));
+		Assertions.assertThrows(Expr4jException.class, () -> new DoubleExpression(builder.build(String.join(" + ", Collections.nCopies(count, "x")) + " + nothing")));
+	}
+
+	@Test
+	public void test6() {
+		AtomicInteger calls = new AtomicInteger();
+		expressionDictionary.addFunction(new Function<>("g", 1, true, (DoubleUnaryOperation) (x) -> {
+			calls.incrementAndGet();
+			return x * 2;
+		}));
+
+		// shared subexpressions are evaluated once, including those inside lazy operands of boxed operations
+		DoubleExpression doubleExpression = new DoubleExpression(builder.build("if(x, g(x), 0) + g(x) * g(x)"));
+		Assertions.assertEquals(1, doubleExpression.getExpression().getSharedCount());
+
+		this.assertEquals(42, doubleExpression.evaluateAsDouble(3));
+		Assertions.assertEquals(1, calls.get());
+		this.assertEquals(0, doubleExpression.evaluateAsDouble(0));
+		Assertions.assertEquals(2, calls.get());
+
+		// batch evaluation computes a shared subexpression once per chunk of rows
+		doubleExpression = new DoubleExpression(builder.build("g(x) + g(x) * g(x)"));
+		int rows = DoubleExpression.BATCH_SIZE + 10;
+		double[][] columns = new double[1][rows];
+		for (int i = 0; i < rows; i++) {
+			columns[0][i] = i;
+		}
+		double[] results = new double[rows];
+
+		calls.set(0);
+		doubleExpression.evaluateBatch(columns, results);
+		Assertions.assertEquals(rows, calls.get());
+		for (int i = 0; i < rows; i++) {
+			this.assertEquals(2 * i + 4 * i * i, results[i]);
+		}
+	}
+
+	@Test
+	public void test7() {
+		AtomicInteger chunks = new AtomicInteger();
+		expressionDictionary.addFunction(new Function<>("sum", new DoubleNaryOperation() {
+			@Override
+			public double applyAsDouble(double[] operands, int count) {
+				double sum = 0;
+				for (int i = 0; i < count; i++) {
+					sum += operands[i];
+				}
+				return sum;
+			}
+
+			@Override
+			public void applyAsDouble(double[][] operands, int operandCount, double[] results, int count) {
+				chunks.incrementAndGet();
+				for (int i = 0; i < count; i++) {
+					double sum = 0;
+					for (int j = 0; j < operandCount; j++) {
+						sum += operands[j][i];
+					}
+					results[i] = sum;
+				}
+			}
+		}));
+
+		// nested n-ary operations, with and without a vector form, are evaluated over recycled vectors
+		DoubleExpression doubleExpression = new DoubleExpression(builder.build("sum(max(x, y, sum(x, 1)), y, max(sum(y, y), x))"));
+
+		int rows = 2 * DoubleExpression.BATCH_SIZE + 100;
+		double[][] columns = new double[2][rows];
+		for (int i = 0; i < rows; i++) {
+			columns[doubleExpression.getSlot("x")][i] = i;
+			columns[doubleExpression.getSlot("y")][i] = rows - 2 * i;
+		}
+
+		double[] results = new double[rows];
+		doubleExpression.evaluateBatch(columns, results);
+		Assertions.assertEquals(9, chunks.get());
+
+		for (int i = 0; i < rows; i++) {
+			this.assertEquals(doubleExpression.evaluateAsDouble(columns[0][i], columns[1][i]), results[i]);
+		}
+	}
+
+}
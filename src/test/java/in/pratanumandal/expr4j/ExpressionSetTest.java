@@ -0,0 +1,119 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j;
+
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.expression.ExpressionSet;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExpressionSetTest {
+
+	public static double DELTA = 0.00000000001;
+
+	protected ExpressionBuilder<Double> builder;
+	protected ExpressionDictionary<Double> expressionDictionary;
+
+	public ExpressionSetTest() {
+		builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+			@Override
+			protected Double stringToOperand(String operand) {
+				return Double.parseDouble(operand);
+			}
+
+			@Override
+			protected String operandToString(Double operand) {
+				return operand == operand.intValue() ? String.valueOf(operand.intValue()) : String.valueOf(operand);
+			}
+		});
+
+		expressionDictionary = builder.getExpressionDictionary();
+
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, (DoubleUnaryOperation) (operand) -> -operand));
+
+		expressionDictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left + right));
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left - right));
+		expressionDictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left * right));
+		expressionDictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left / right));
+		expressionDictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, (DoubleBinaryOperation) Math::pow));
+
+		expressionDictionary.addFunction(new Function<>("sqrt", 1, (DoubleUnaryOperation) Math::sqrt));
+		expressionDictionary.addFunction(new Function<>("max", (DoubleNaryOperation) (operands, count) -> {
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				max = Math.max(max, operands[i]);
+			}
+			return max;
+		}));
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+
+		expressionDictionary.addConstant("pi", Math.PI);
+	}
+
+	private void assertEquals(double expected, double actual) {
+		Assertions.assertEquals(expected, actual, DELTA);
+	}
+
+	@Test
+	public void test1() {
+		AtomicInteger calls = new AtomicInteger();
+
+		expressionDictionary.addFunction(new Function<>("hypot", 2, true, (DoubleBinaryOperation) (x, y) -> {
+			calls.incrementAndGet();
+			return Math.hypot(x, y);
+		}));
+
+		Expression<Double> first = builder.build("hypot(x, y) * 2");
+		Expression<Double> second = builder.build("z - hypot(x, y)");
+
+		ExpressionSet<Double> expressionSet = new ExpressionSet<>(Arrays.asList(first, second));
+
+		Assertions.assertEquals(Arrays.asList("x", "y", "z"), expressionSet.getVariables());
+		Assertions.assertEquals(1, expressionSet.getSharedCount());
+		Assertions.assertEquals(3, expressionSet.getEliminatedCount());
+		Assertions.assertEquals("hypot(x, y) * 2\nz - hypot(x, y)", expressionSet.toString());
+
+		Map<String, Double> variables = new HashMap<>();
+		variables.put("x", 3.0);
+		variables.put("y", 4.0);
+		variables.put("z", 1.0);
+
+		Assertions.assertEquals(Arrays.asList(10.0, -4.0), expressionSet.evaluate(variables));
+		Assertions.assertEquals(1, calls.get());
+
+		// the expressions remain usable on their own
+		this.assertEquals(-4, second.evaluate(variables));
+		Assertions.assertEquals(2, calls.get());
+	}
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2023 Pratanu Mandal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package in.pratanumandal.expr4j;
+
+import in.pratanumandal.expr4j.exception.Expr4jException;
+import in.pratanumandal.expr4j.expression.Expression;
+import in.pratanumandal.expr4j.expression.ExpressionBuilder;
+import in.pratanumandal.expr4j.expression.ExpressionConfig;
+import in.pratanumandal.expr4j.expression.ExpressionDictionary;
+import in.pratanumandal.expr4j.expression.ExpressionGraph;
+import in.pratanumandal.expr4j.token.DoubleBinaryOperation;
+import in.pratanumandal.expr4j.token.DoubleNaryOperation;
+import in.pratanumandal.expr4j.token.DoubleUnaryOperation;
+import in.pratanumandal.expr4j.token.Function;
+import in.pratanumandal.expr4j.token.Operator;
+import in.pratanumandal.expr4j.token.OperatorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class GraphTest {
+
+	public static double DELTA = 0.00000000001;
+
+	protected ExpressionBuilder<Double> builder;
+	protected ExpressionDictionary<Double> expressionDictionary;
+
+	public GraphTest() {
+		builder = new ExpressionBuilder<>(new ExpressionConfig<Double>() {
+			@Override
+			protected Double stringToOperand(String operand) {
+				return Double.parseDouble(operand);
+			}
+
+			@Override
+			protected String operandToString(Double operand) {
+				return operand == operand.intValue() ? String.valueOf(operand.intValue()) : String.valueOf(operand);
+			}
+		});
+
+		expressionDictionary = builder.getExpressionDictionary();
+
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.PREFIX, Integer.MAX_VALUE, (DoubleUnaryOperation) (operand) -> -operand));
+
+		expressionDictionary.addOperator(new Operator<>("+", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left + right));
+		expressionDictionary.addOperator(new Operator<>("-", OperatorType.INFIX, 1, (DoubleBinaryOperation) (left, right) -> left - right));
+		expressionDictionary.addOperator(new Operator<>("*", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left * right));
+		expressionDictionary.addOperator(new Operator<>("/", OperatorType.INFIX, 2, (DoubleBinaryOperation) (left, right) -> left / right));
+		expressionDictionary.addOperator(new Operator<>("^", OperatorType.INFIX_RTL, 3, (DoubleBinaryOperation) Math::pow));
+
+		expressionDictionary.addFunction(new Function<>("sqrt", 1, (DoubleUnaryOperation) Math::sqrt));
+		expressionDictionary.addFunction(new Function<>("max", (DoubleNaryOperation) (operands, count) -> {
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				max = Math.max(max, operands[i]);
+			}
+			return max;
+		}));
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+
+		expressionDictionary.addConstant("pi", Math.PI);
+	}
+
+	private void assertEquals(double expected, double actual) {
+		Assertions.assertEquals(expected, actual, DELTA);
+	}
+
+	@Test
+	public void test1() {
+		Map<String, Expression<Double>> cells = new LinkedHashMap<>();
+		cells.put("total", builder.build("subtotal * (1 + tax)"));
+		cells.put("subtotal", builder.build("price * quantity"));
+		cells.put("shipping", builder.build("weight * rate"));
+		cells.put("invoice", builder.build("total + shipping"));
+
+		ExpressionGraph<Double> graph = new ExpressionGraph<>(cells);
+		Assertions.assertEquals(Arrays.asList("subtotal", "shipping", "total", "invoice"), graph.getCells());
+		Assertions.assertEquals(set("price", "quantity", "tax", "weight", "rate"), graph.getInputs());
+
+		graph.set("price", 10.0).set("quantity", 3.0).set("tax", 0.5).set("weight", 2.0).set("rate", 4.0);
+		Assertions.assertEquals(4, graph.recalculate());
+		this.assertEquals(45.0, graph.get("total"));
+		this.assertEquals(53.0, graph.get("invoice"));
+
+		// only the cells downstream of a changed input are recalculated
+		graph.set("rate", 5.0).set("price", 10.0);
+		Assertions.assertFalse(graph.isDirty("total"));
+		Assertions.assertTrue(graph.isDirty("invoice"));
+		Assertions.assertEquals(2, graph.recalculate());
+		this.assertEquals(55.0, graph.get("invoice"));
+
+		// errors propagate to the cells reading them
+		ExpressionGraph<Double> missing = new ExpressionGraph<>(cells);
+		missing.set("price", 1.0).set("tax", 0.0).set("weight", 1.0).set("rate", 1.0);
+		Assertions.assertEquals(4, missing.recalculate());
+		Expr4jException exception = Assertions.assertThrows(Expr4jException.class, () -> missing.get("invoice"));
+		Assertions.assertEquals("Variable not found: quantity", exception.getMessage());
+		this.assertEquals(1.0, missing.get("shipping"));
+
+		Map<String, Expression<Double>> cyclic = new LinkedHashMap<>();
+		cyclic.put("a", builder.build("b + 1"));
+		cyclic.put("b", builder.build("c * 2"));
+		cyclic.put("c", builder.build("a - x"));
+		cyclic.put("d", builder.build("a"));
+		exception = Assertions.assertThrows(Expr4jException.class, () -> new ExpressionGraph<>(cyclic));
+		Assertions.assertEquals("Cycle detected: a -> b -> c -> a", exception.getMessage());
+	}
+
+	@Test
+	public void test2() {
+		int count = 5000;
+
+		// a chain of cells, each of which has a neighbour independent of the rest of the chain
+		Map<String, Expression<Double>> cells = new LinkedHashMap<>();
+		cells.put("c0", builder.build("x"));
+		for (int i = 1; i < count; i++) {
+			cells.put("c" + i, builder.build("c" + (i - 1) + " + 1"));
+			cells.put("d" + i, builder.build("y * " + i));
+		}
+
+		ExpressionGraph<Double> graph = new ExpressionGraph<>(cells);
+		graph.set("x", 0.0).set("y", 1.0);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Assertions.assertEquals(2 * count - 1, graph.recalculate(pool));
+			this.assertEquals(count - 1, graph.get("c" + (count - 1)));
+			this.assertEquals(count - 1, graph.get("d" + (count - 1)));
+
+			graph.set("y", 2.0);
+			Assertions.assertEquals(count - 1, graph.recalculate(pool));
+			this.assertEquals(2 * (count - 1), graph.get("d" + (count - 1)));
+			this.assertEquals(count - 1, graph.get("c" + (count - 1)));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private static Set<String> set(String... labels) {
+		return new HashSet<>(Arrays.asList(labels));
+	}
+
+}
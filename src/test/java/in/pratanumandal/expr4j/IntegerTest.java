@@ -17,6 +17,8 @@
 
 package in.pratanumandal.expr4j;
 
+import in.pratanumandal.expr4j.cache.ConcurrentCache;
+import in.pratanumandal.expr4j.expression.Bindings;
 import in.pratanumandal.expr4j.expression.Expression;
 import in.pratanumandal.expr4j.expression.ExpressionBuilder;
 import in.pratanumandal.expr4j.expression.ExpressionConfig;
@@ -27,10 +29,18 @@ import in.pratanumandal.expr4j.token.OperatorType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class IntegerTest {
@@ -224,4 +234,185 @@ public class IntegerTest {
 		Assertions.assertEquals(expectedString, actualString);
 	}
 
+	@Test
+	public void test11() {
+		String expectedString = "x * y + x";
+
+		Expression<Integer> expression = builder.build("x * y + x");
+
+		Assertions.assertEquals(Arrays.asList("x", "y"), expression.getVariables());
+		Assertions.assertEquals(1, expression.getSlot("y"));
+		Assertions.assertEquals(-1, expression.getSlot("z"));
+
+		Bindings<Integer> bindings = expression.bindings();
+
+		bindings.set(0, 2).set(1, 3);
+		Assertions.assertEquals(8, expression.evaluate(bindings));
+
+		bindings.set("y", 10);
+		Assertions.assertEquals(22, expression.evaluate(bindings));
+
+		Assertions.assertEquals(expectedString, expression.toString());
+	}
+
+	@Test
+	public void test12() {
+		expressionDictionary.addConstant("ten", 10);
+
+		Map<String, Integer> variables = new HashMap<>();
+		variables.put("x", 5);
+
+		int expected = 50;
+		String expectedString = "ten * x";
+
+		Expression<Integer> expression = builder.build("ten x");
+
+		Assertions.assertEquals(Arrays.asList("x"), expression.getVariables());
+
+		int actual = expression.evaluate(variables);
+		String actualString = expression.toString();
+
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertEquals(expectedString, actualString);
+	}
+
+	@Test
+	public void test13() {
+		long modificationCount = expressionDictionary.getModificationCount();
+
+		expressionDictionary.addOperator(new Operator<>("**", OperatorType.INFIX_RTL, 3, (parameters) -> (int) Math.pow(parameters.get(0).value(), parameters.get(1).value())));
+		Assertions.assertTrue(expressionDictionary.getModificationCount() > modificationCount);
+
+		int expected = 16;
+		String expectedString = "2 ** 3 * 2";
+
+		Expression<Integer> expression = builder.build("2 ** 3 * 2");
+
+		int actual = expression.evaluate();
+		String actualString = expression.toString();
+
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertEquals(expectedString, actualString);
+	}
+
+	@Test
+	public void test14() {
+		builder.setExpressionCache(new ConcurrentCache<>(100));
+
+		Expression<Integer> expression = builder.build("2 ^ 3 * 2");
+
+		Assertions.assertSame(expression, builder.build("2 ^ 3 * 2"));
+		Assertions.assertEquals(16, expression.evaluate());
+		Assertions.assertEquals(1, builder.getExpressionCache().stats().getHitCount());
+
+		// modifying the dictionary invalidates the cache
+		expressionDictionary.addOperator(new Operator<>("^", OperatorType.INFIX, 3, (parameters) -> parameters.get(0).value() ^ parameters.get(1).value()));
+
+		Expression<Integer> rebuilt = builder.build("2 ^ 3 * 2");
+
+		Assertions.assertNotSame(expression, rebuilt);
+		Assertions.assertEquals(2, rebuilt.evaluate());
+
+		// an expression cached concurrently with a modification of the dictionary is never returned
+		builder.getExpressionCache().put("2 ^ 3 * 2", expression);
+		Assertions.assertNotSame(expression, builder.build("2 ^ 3 * 2"));
+		Assertions.assertEquals(2, builder.build("2 ^ 3 * 2").evaluate());
+	}
+
+	@Test
+	public void test15() throws Exception {
+		int threads = 8;
+		int iterations = 500;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+
+			for (int t = 0; t < threads; t++) {
+				int seed = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+
+					for (int i = 0; i < iterations; i++) {
+						int x = seed * iterations + i;
+
+						// share a builder between threads, with the cache enabled half way through
+						if (seed == 0 && i == iterations / 2) {
+							builder.setExpressionCache(new ConcurrentCache<>(64));
+						}
+
+						Expression<Integer> expression = builder.build("add(" + x + " * y, -(y + " + i % 7 + "))");
+
+						Map<String, Integer> variables = new HashMap<>();
+						variables.put("y", seed);
+
+						Assertions.assertEquals(x * seed - (seed + i % 7), expression.evaluate(variables));
+						Assertions.assertEquals("add(" + x + " * y, -(y + " + i % 7 + "))", expression.toString());
+					}
+
+					return null;
+				}));
+			}
+
+			start.countDown();
+
+			for (Future<Void> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test16() {
+		int count = 25000;
+
+		String expr = "add(" + String.join(", ", Collections.nCopies(count, "2")) + ")";
+
+		Expression<Integer> expression = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> builder.build(expr));
+
+		Assertions.assertEquals(count, expression.root.children.size());
+		Assertions.assertEquals(2 * count, expression.evaluate());
+	}
+
+	@Test
+	public void test17() {
+		int count = 100000;
+
+		String sum = String.join(" + ", Collections.nCopies(count, "x"));
+		String nested = String.join("", Collections.nCopies(count, "add(1, ")) + "0" + String.join("", Collections.nCopies(count, ")"));
+
+		Map<String, Integer> variables = new HashMap<>();
+		variables.put("x", 2);
+
+		Expression<Integer> expression = builder.build(sum);
+		Assertions.assertEquals(2 * count, expression.evaluate(variables));
+		Assertions.assertEquals(sum, expression.toString());
+
+		expression = builder.build(nested);
+		Assertions.assertEquals(count, expression.evaluate());
+		Assertions.assertEquals(nested.replace(",", ", ").replace(",  ", ", "), expression.toString());
+
+		// exceptions of deep operands are thrown when their value is requested
+		expression = builder.build("1 / 0 + " + sum);
+		Assertions.assertThrows(ArithmeticException.class, expression::evaluate);
+
+		// the operands of lazy operations are evaluated only when requested, however deep the operation is
+		List<Integer> calls = new ArrayList<>();
+		expressionDictionary.addFunction(new Function<>("probe", 1, (parameters) -> {
+			calls.add(parameters.get(0).value());
+			return parameters.get(0).value();
+		}));
+		expressionDictionary.addFunction(new Function<>("if", 3, (parameters) ->
+				parameters.get(0).value() != 0 ? parameters.get(1).value() : parameters.get(2).value()));
+
+		expression = builder.build("if(x - 2, probe(1) + " + sum + ", probe(2) + 1) + " + sum + " + if(x, " + sum + ", probe(3))");
+		Assertions.assertEquals(3 + 4 * count, expression.evaluate(variables));
+		Assertions.assertEquals(Arrays.asList(2), calls);
+	}
+
 }